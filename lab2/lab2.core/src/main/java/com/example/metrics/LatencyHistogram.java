@@ -0,0 +1,67 @@
+package com.example.metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe latency histogram with microsecond resolution, backed by HdrHistogram.
+ * Recording is wait-free, so it is cheap enough to leave on in production paths.
+ */
+public class LatencyHistogram {
+    private static final long MAX_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final ConcurrentHistogram histogram = new ConcurrentHistogram(1, MAX_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos));
+        histogram.recordValue(Math.min(micros, MAX_TRACKABLE_MICROS));
+    }
+
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Point-in-time copy, so percentiles read from it are mutually consistent.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(histogram.copy());
+    }
+
+    public void reset() {
+        histogram.reset();
+    }
+
+    public static class Snapshot {
+        private final Histogram histogram;
+
+        private Snapshot(Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        public long getCount() {
+            return histogram.getTotalCount();
+        }
+
+        public double getMeanMicros() {
+            return histogram.getTotalCount() == 0 ? 0 : histogram.getMean();
+        }
+
+        public long getPercentileMicros(double percentile) {
+            return histogram.getValueAtPercentile(percentile);
+        }
+
+        public long getMaxMicros() {
+            return histogram.getMaxValue();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.0fus p50=%dus p99=%dus max=%dus",
+                    getCount(), getMeanMicros(), getPercentileMicros(50), getPercentileMicros(99), getMaxMicros());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.metrics;
+
+import java.io.IOException;
+
+/**
+ * Prometheus text exposition format (version 0.0.4), shared by everything that ends up in
+ * the {@code GET /metrics} scrape. Latencies are written as summaries in microseconds.
+ */
+public final class PrometheusText {
+
+    /**
+     * Something that appends its own series to a scrape.
+     */
+    @FunctionalInterface
+    public interface Source {
+        void writePrometheus(Appendable out) throws IOException;
+    }
+
+    private PrometheusText() {
+    }
+
+    public static void writeType(Appendable out, String name, String type) throws IOException {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * @param labels {@code key="value"} pairs separated by commas, or empty
+     */
+    public static void writeSample(Appendable out, String name, String labels, long value) throws IOException {
+        writeName(out, name, labels).append(Long.toString(value)).append('\n');
+    }
+
+    public static void writeSample(Appendable out, String name, String labels, double value) throws IOException {
+        writeName(out, name, labels).append(Double.toString(value)).append('\n');
+    }
+
+    /**
+     * Quantiles, count and max of {@code snapshot}; nothing if it has no values yet.
+     */
+    public static void writeSummary(Appendable out, String name, String labels, LatencyHistogram.Snapshot snapshot)
+            throws IOException {
+        if (snapshot.getCount() == 0) {
+            return;
+        }
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            writeSample(out, name, prefix + "quantile=\"" + quantile + "\"",
+                    snapshot.getPercentileMicros(quantile * 100));
+        }
+        writeSample(out, name + "_count", labels, snapshot.getCount());
+        writeSample(out, name + "_max", labels, snapshot.getMaxMicros());
+    }
+
+    private static Appendable writeName(Appendable out, String name, String labels) throws IOException {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        return out.append(' ');
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.model;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Identity extracted from a verified JWT. Immutable so it can be shared between
+ * requests presenting the same bearer token.
+ */
+@Value
+public class AuthPrincipal {
+    String userId;
+    User.Role role;
+    Instant expiresAt;
+    // jti and iat claims, used to match revocations; null for tokens issued without them
+    String tokenId;
+    Instant issuedAt;
+
+    public boolean isAdmin() {
+        return User.Role.ADMIN.equals(role);
+    }
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
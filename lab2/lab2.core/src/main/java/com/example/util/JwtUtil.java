@@ -1,36 +1,31 @@
 package com.example.util;
 
+import com.example.model.AuthPrincipal;
 import com.example.model.User;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
 
-import javax.crypto.SecretKey;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.Date;
+import java.time.Duration;
+import java.util.Optional;
 
 @Slf4j
 public class JwtUtil {
-    private static final SecretKey SECRET_KEY = Keys.secretKeyFor(SignatureAlgorithm.HS256);
-    private static final int EXPIRATION_HOURS = 24;
+    // Short-lived: clients renew through a refresh token, and revocations only need to be
+    // remembered for this long
+    public static final String ACCESS_TTL_PROPERTY = "lab2.jwt.accessTtlSeconds";
+    private static final Duration ACCESS_TTL = Duration.ofSeconds(Long.getLong(ACCESS_TTL_PROPERTY, 900));
+    private static final int TOKEN_CACHE_SIZE = 10_000;
+
+    // Keys from lab2.jwt.keyDir or lab2.jwt.keystore, so tokens survive restarts and are
+    // accepted by every node sharing the ring
+    private static final KeyRing KEY_RING = KeyRing.fromSystemProperties(ACCESS_TTL);
+    private static final TokenService TOKEN_SERVICE = new TokenService(KEY_RING, ACCESS_TTL);
+    private static final VerifiedTokenCache TOKEN_CACHE = new VerifiedTokenCache(TOKEN_CACHE_SIZE);
+    private static final TokenRevocationList REVOCATIONS = new TokenRevocationList(ACCESS_TTL);
 
     public static String generateToken(User user) {
         try {
-            LocalDateTime expiration = LocalDateTime.now().plusHours(EXPIRATION_HOURS);
-            Date expirationDate = Date.from(expiration.atZone(ZoneId.systemDefault()).toInstant());
-
-            return Jwts.builder()
-                    .subject(user.getId())
-                    .claim("username", user.getUsername())
-                    .claim("email", user.getEmail())
-                    .claim("role", user.getRole().toString())
-                    .issuedAt(new Date())
-                    .expiration(expirationDate)
-                    .signWith(SECRET_KEY)
-                    .compact();
+            return TOKEN_SERVICE.issue(user);
         } catch (Exception e) {
             log.error("Error generating JWT token for user: {}", user.getUsername(), e);
             throw new RuntimeException("Failed to generate token", e);
@@ -39,44 +34,76 @@ public class JwtUtil {
 
     public static Claims parseToken(String token) {
         try {
-            return Jwts.parser()
-                    .verifyWith(SECRET_KEY)
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
+            return TOKEN_SERVICE.parse(token);
         } catch (Exception e) {
             log.error("Error parsing JWT token", e);
             throw new RuntimeException("Invalid token", e);
         }
     }
 
-    public static boolean isTokenValid(String token) {
+    /**
+     * Verifies the token once and returns the principal it carries. Repeated calls with
+     * the same token are served from {@link VerifiedTokenCache} until the token expires;
+     * either way the principal is checked against the in-memory {@link TokenRevocationList},
+     * so authorization needs no database access.
+     */
+    public static Optional<AuthPrincipal> verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Optional<AuthPrincipal> cached = TOKEN_CACHE.get(token);
+        if (cached.isPresent()) {
+            return REVOCATIONS.isRevoked(cached.get()) ? Optional.empty() : cached;
+        }
+
         try {
-            Claims claims = parseToken(token);
-            return claims.getExpiration().after(new Date());
+            // Not parseToken(): a rejected token is routine here, not worth an ERROR with a stack trace
+            Claims claims = TOKEN_SERVICE.parse(token);
+            AuthPrincipal principal = new AuthPrincipal(
+                    claims.getSubject(),
+                    User.Role.valueOf(claims.get("role", String.class)),
+                    claims.getExpiration().toInstant(),
+                    claims.getId(),
+                    claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant());
+
+            TOKEN_CACHE.put(token, principal);
+            return REVOCATIONS.isRevoked(principal) ? Optional.empty() : Optional.of(principal);
         } catch (Exception e) {
-            log.debug("Token validation failed", e);
-            return false;
+            log.debug("Token verification failed: {}", e.toString());
+            return Optional.empty();
         }
     }
 
+    public static VerifiedTokenCache getTokenCache() {
+        return TOKEN_CACHE;
+    }
+
+    public static KeyRing getKeyRing() {
+        return KEY_RING;
+    }
+
+    public static TokenRevocationList getRevocations() {
+        return REVOCATIONS;
+    }
+
+    public static Duration getAccessTtl() {
+        return ACCESS_TTL;
+    }
+
+    public static boolean isTokenValid(String token) {
+        return verify(token).isPresent();
+    }
+
     public static String getUserIdFromToken(String token) {
-        try {
-            Claims claims = parseToken(token);
-            return claims.getSubject();
-        } catch (Exception e) {
-            log.error("Error extracting user ID from token", e);
-            throw new RuntimeException("Failed to extract user ID", e);
-        }
+        return verify(token)
+                .map(AuthPrincipal::getUserId)
+                .orElseThrow(() -> new RuntimeException("Failed to extract user ID"));
     }
 
     public static String getRoleFromToken(String token) {
-        try {
-            Claims claims = parseToken(token);
-            return claims.get("role", String.class);
-        } catch (Exception e) {
-            log.error("Error extracting role from token", e);
-            throw new RuntimeException("Failed to extract role", e);
-        }
+        return verify(token)
+                .map(principal -> principal.getRole().toString())
+                .orElseThrow(() -> new RuntimeException("Failed to extract role"));
     }
 }
\ No newline at end of file
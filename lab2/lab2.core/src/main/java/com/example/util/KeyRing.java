@@ -0,0 +1,520 @@
+package com.example.util;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Signing and verification keys identified by {@code kid}. Tokens are signed with the
+ * newest key that has private material and carry its id in the header; verification
+ * resolves the header's {@code kid} with a single map lookup, so tokens signed with any
+ * key still on the ring stay valid across restarts, nodes and rotations.
+ * <p>
+ * A ring is loaded from one of:
+ * <ul>
+ *     <li>a directory: {@code <kid>.secret} (base64 HMAC key), {@code <kid>.key.pem}
+ *     (PKCS#8 EC P-256 or Ed25519 private key) and {@code <kid>.pub.pem} (X.509 public
+ *     key). A node given only {@code .pub.pem} files can verify but not sign;</li>
+ *     <li>a PKCS12 keystore, one alias per kid: secret keys, private keys with their
+ *     certificate, or trusted certificates for verification only.</li>
+ * </ul>
+ * For directory rings {@link #rotate} writes a new key and {@link #prune} removes keys
+ * that no live token can have been signed with. Only one node should rotate; the others
+ * pick changes up with {@link #reload}. A new key is only signed with once it is older
+ * than the activation delay (the other nodes' reload interval), so every node knows it
+ * before the first token carrying it arrives. A token with a kid this node has not seen
+ * yet still triggers a reload, at most once per {@value #UNKNOWN_KID_RELOAD_MILLIS} ms.
+ */
+@Slf4j
+public class KeyRing extends LocatorAdapter<Key> {
+    public static final String KEY_DIR_PROPERTY = "lab2.jwt.keyDir";
+    public static final String KEYSTORE_PROPERTY = "lab2.jwt.keystore";
+    public static final String KEYSTORE_PASSWORD_PROPERTY = "lab2.jwt.keystorePassword";
+    public static final String ALGORITHM_PROPERTY = "lab2.jwt.algorithm";
+    public static final String ROTATE_HOURS_PROPERTY = "lab2.jwt.rotateHours";
+    public static final String RELOAD_SECONDS_PROPERTY = "lab2.jwt.keyReloadSeconds";
+
+    static final long UNKNOWN_KID_RELOAD_MILLIS = 1_000;
+
+    private static final String SECRET_SUFFIX = ".secret";
+    private static final String PRIVATE_SUFFIX = ".key.pem";
+    private static final String PUBLIC_SUFFIX = ".pub.pem";
+    private static final DateTimeFormatter KID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    public enum Algorithm {
+        HS256, ES256, EdDSA
+    }
+
+    /**
+     * The key new tokens are signed with.
+     */
+    public record SigningKey(String kid, Key key) {
+    }
+
+    private record Entry(String kid, Key signingKey, Key verificationKey, Instant created) {
+    }
+
+    /**
+     * @param signable entries with private material, oldest first
+     */
+    // Replaced as a whole on reload, so readers never see a half-built ring
+    private record State(Map<String, Key> verificationKeys, List<Entry> signable, List<Entry> entries) {
+    }
+
+    private final Source source;
+    private final Algorithm algorithm;
+    private final Clock clock;
+    private final Duration activationDelay;
+    private final AtomicLong nextUnknownKidReload = new AtomicLong();
+    private volatile State state;
+    private ScheduledExecutorService maintenance;
+
+    private KeyRing(Source source, Algorithm algorithm, Clock clock, Duration activationDelay) throws IOException {
+        this.source = source;
+        this.algorithm = algorithm;
+        this.clock = clock;
+        this.activationDelay = activationDelay;
+        reload();
+    }
+
+    /**
+     * A ring holding one key under {@code kid}, which is not persisted anywhere.
+     */
+    public static KeyRing ofKey(String kid, SecretKey key) {
+        try {
+            Entry entry = new Entry(kid, key, key, Instant.EPOCH);
+            return new KeyRing(() -> List.of(entry), Algorithm.HS256, Clock.systemUTC(), Duration.ZERO);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Loads the keys in {@code dir}, creating the directory and a first key of
+     * {@code algorithm} if it holds none. New keys sign as soon as they are written.
+     */
+    public static KeyRing fromDirectory(Path dir, Algorithm algorithm, Clock clock) throws IOException {
+        return fromDirectory(dir, algorithm, clock, Duration.ZERO);
+    }
+
+    /**
+     * Like {@link #fromDirectory(Path, Algorithm, Clock)}, but a key only becomes the
+     * signing key once it is older than {@code activationDelay}.
+     */
+    public static KeyRing fromDirectory(Path dir, Algorithm algorithm, Clock clock, Duration activationDelay)
+            throws IOException {
+        Files.createDirectories(dir);
+        KeyRing ring = new KeyRing(new DirectorySource(dir), algorithm, clock, activationDelay);
+        if (ring.state.entries().isEmpty()) {
+            ring.rotate();
+        }
+        return ring;
+    }
+
+    public static KeyRing fromKeyStore(Path file, char[] password) throws IOException {
+        return new KeyRing(new KeyStoreSource(file, password), Algorithm.HS256, Clock.systemUTC(), Duration.ZERO);
+    }
+
+    /**
+     * Builds the ring from {@code lab2.jwt.keystore} or {@code lab2.jwt.keyDir} and starts
+     * reloading (and, with {@code lab2.jwt.rotateHours > 0}, rotating) it in the
+     * background. Without either property the key is random and tokens do not survive a
+     * restart.
+     */
+    public static KeyRing fromSystemProperties(Duration tokenTtl) {
+        try {
+            String keystore = System.getProperty(KEYSTORE_PROPERTY);
+            String keyDir = System.getProperty(KEY_DIR_PROPERTY);
+            Duration reload = Duration.ofSeconds(Long.getLong(RELOAD_SECONDS_PROPERTY, 60));
+
+            KeyRing ring;
+            Duration rotation = Duration.ZERO;
+            if (keystore != null) {
+                ring = fromKeyStore(Path.of(keystore),
+                        System.getProperty(KEYSTORE_PASSWORD_PROPERTY, "").toCharArray());
+            } else if (keyDir != null) {
+                Algorithm algorithm = Algorithm.valueOf(System.getProperty(ALGORITHM_PROPERTY, "HS256"));
+                // Other nodes see a rotated key within one reload interval
+                ring = fromDirectory(Path.of(keyDir), algorithm, Clock.systemUTC(), reload);
+                rotation = Duration.ofHours(Long.getLong(ROTATE_HOURS_PROPERTY, 0));
+            } else {
+                log.warn("Neither {} nor {} is set: using a random signing key, tokens will not survive a restart",
+                        KEY_DIR_PROPERTY, KEYSTORE_PROPERTY);
+                return ofKey("ephemeral", Jwts.SIG.HS256.key().build());
+            }
+
+            // A retired key must outlive every token it signed: it keeps signing for one
+            // activation delay after its successor is written, plus a reload of slack
+            ring.startMaintenance(reload, rotation, tokenTtl.plus(reload.multipliedBy(2)));
+            return ring;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load JWT signing keys", e);
+        }
+    }
+
+    /**
+     * The newest key older than the activation delay; while every key is younger (a new
+     * ring, or several nodes creating first keys at once) the oldest one, which is the
+     * likeliest to be known everywhere.
+     */
+    public SigningKey getSigningKey() {
+        Entry signing = signingEntry(state);
+        if (signing == null) {
+            throw new IllegalStateException("Key ring has no private key; this node can only verify tokens");
+        }
+        return new SigningKey(signing.kid(), signing.signingKey());
+    }
+
+    public boolean canSign() {
+        return !state.signable().isEmpty();
+    }
+
+    public List<String> getKeyIds() {
+        return state.entries().stream().map(Entry::kid).toList();
+    }
+
+    @Override
+    protected Key locate(JwsHeader header) {
+        State current = state;
+        String kid = header.getKeyId();
+        if (kid == null) {
+            // Tokens issued before key ids were introduced
+            Entry signing = signingEntry(current);
+            return signing == null ? null : signing.verificationKey();
+        }
+        Key key = current.verificationKeys().get(kid);
+        if (key == null && reloadForUnknownKid()) {
+            key = state.verificationKeys().get(kid);
+        }
+        return key;
+    }
+
+    /**
+     * Reloads for a token whose kid is not on the ring, e.g. one signed on another node
+     * right after it created its first key. Rate-limited, since anyone can send any kid.
+     */
+    private boolean reloadForUnknownKid() {
+        long now = clock.millis();
+        long next = nextUnknownKidReload.get();
+        if (now < next || !nextUnknownKidReload.compareAndSet(next, now + UNKNOWN_KID_RELOAD_MILLIS)) {
+            return false;
+        }
+        try {
+            reload();
+            return true;
+        } catch (IOException e) {
+            log.warn("Reloading JWT keys for an unknown kid failed", e);
+            return false;
+        }
+    }
+
+    private Entry signingEntry(State current) {
+        List<Entry> signable = current.signable();
+        if (signable.isEmpty()) {
+            return null;
+        }
+        Instant activeBefore = clock.instant().minus(activationDelay);
+        for (int i = signable.size() - 1; i >= 0; i--) {
+            if (!signable.get(i).created().isAfter(activeBefore)) {
+                return signable.get(i);
+            }
+        }
+        return signable.get(0);
+    }
+
+    public synchronized void reload() throws IOException {
+        List<Entry> entries = new ArrayList<>(source.load());
+        entries.sort(Comparator.comparing(Entry::created).thenComparing(Entry::kid));
+
+        Map<String, Key> verificationKeys = new HashMap<>();
+        List<Entry> signable = new ArrayList<>();
+        for (Entry entry : entries) {
+            verificationKeys.put(entry.kid(), entry.verificationKey());
+            if (entry.signingKey() != null) {
+                signable.add(entry);
+            }
+        }
+
+        State previous = state;
+        state = new State(Map.copyOf(verificationKeys), List.copyOf(signable), List.copyOf(entries));
+        if (previous == null || !previous.verificationKeys().keySet().equals(verificationKeys.keySet())) {
+            Entry signing = signingEntry(state);
+            log.info("Loaded {} JWT keys, signing with {}", entries.size(), signing == null ? "none" : signing.kid());
+        }
+    }
+
+    /**
+     * Writes a new key of the configured algorithm. It becomes the signing key once it is
+     * older than the activation delay, by when every node has loaded it.
+     */
+    public synchronized String rotate() throws IOException {
+        if (!(source instanceof DirectorySource directory)) {
+            throw new UnsupportedOperationException("Only directory key rings can rotate");
+        }
+        String kid = KID_FORMAT.format(clock.instant()) + "-" + Integer.toHexString(ThreadLocalRandom.current().nextInt(0x1000, 0x10000));
+        directory.write(kid, algorithm);
+        reload();
+        log.info("Rotated JWT signing key to {}, signing with it in {}s", kid, activationDelay.toSeconds());
+        return kid;
+    }
+
+    /**
+     * Removes keys superseded for longer than {@code retention}: every token they signed
+     * has expired by then.
+     *
+     * @return the removed key ids
+     */
+    public synchronized List<String> prune(Duration retention) throws IOException {
+        if (!(source instanceof DirectorySource directory)) {
+            return List.of();
+        }
+        List<Entry> entries = state.entries();
+        Instant cutoff = clock.instant().minus(retention);
+        List<String> removed = new ArrayList<>();
+        // entries are oldest first; a key is retired once its successor is older than the cutoff
+        for (int i = 0; i < entries.size() - 1; i++) {
+            if (entries.get(i + 1).created().isBefore(cutoff)) {
+                directory.delete(entries.get(i).kid());
+                removed.add(entries.get(i).kid());
+            }
+        }
+        if (!removed.isEmpty()) {
+            reload();
+            log.info("Pruned retired JWT keys {}", removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Reloads every {@code reload}; when {@code rotation} is positive, also rotates once the
+     * signing key is that old and prunes keys retired for longer than {@code retention}.
+     */
+    public synchronized void startMaintenance(Duration reload, Duration rotation, Duration retention) {
+        if (maintenance != null) {
+            return;
+        }
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jwt-key-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(() -> {
+            try {
+                reload();
+                if (!rotation.isZero() && !rotation.isNegative()) {
+                    List<Entry> entries = state.entries();
+                    Instant newest = entries.isEmpty() ? Instant.EPOCH : entries.get(entries.size() - 1).created();
+                    if (newest.plus(rotation).isBefore(clock.instant())) {
+                        rotate();
+                    }
+                    prune(retention);
+                }
+            } catch (Exception e) {
+                log.warn("JWT key maintenance failed", e);
+            }
+        }, reload.toMillis(), reload.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void close() {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+            maintenance = null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Source {
+        List<Entry> load() throws IOException;
+    }
+
+    private static final class DirectorySource implements Source {
+        private final Path dir;
+
+        private DirectorySource(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public List<Entry> load() throws IOException {
+            Map<String, Key> secrets = new HashMap<>();
+            Map<String, PrivateKey> privateKeys = new HashMap<>();
+            Map<String, PublicKey> publicKeys = new HashMap<>();
+            Map<String, Instant> created = new HashMap<>();
+
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    String kid;
+                    if (name.endsWith(SECRET_SUFFIX)) {
+                        kid = name.substring(0, name.length() - SECRET_SUFFIX.length());
+                        secrets.put(kid, Keys.hmacShaKeyFor(Base64.getDecoder().decode(Files.readString(file).trim())));
+                    } else if (name.endsWith(PRIVATE_SUFFIX)) {
+                        kid = name.substring(0, name.length() - PRIVATE_SUFFIX.length());
+                        privateKeys.put(kid, readPrivateKey(file));
+                    } else if (name.endsWith(PUBLIC_SUFFIX)) {
+                        kid = name.substring(0, name.length() - PUBLIC_SUFFIX.length());
+                        publicKeys.put(kid, readPublicKey(file));
+                    } else {
+                        continue;
+                    }
+                    created.merge(kid, Files.getLastModifiedTime(file).toInstant(),
+                            (a, b) -> a.isBefore(b) ? a : b);
+                }
+            }
+
+            List<Entry> entries = new ArrayList<>();
+            secrets.forEach((kid, key) -> entries.add(new Entry(kid, key, key, created.get(kid))));
+            publicKeys.forEach((kid, key) -> entries.add(new Entry(kid, privateKeys.get(kid), key, created.get(kid))));
+            privateKeys.keySet().stream()
+                    .filter(kid -> !publicKeys.containsKey(kid))
+                    .forEach(kid -> log.warn("Ignoring JWT key {}: {}{} has no matching {}", kid, kid, PRIVATE_SUFFIX, PUBLIC_SUFFIX));
+            return entries;
+        }
+
+        private void write(String kid, Algorithm algorithm) throws IOException {
+            switch (algorithm) {
+                case HS256 -> writeAtomically(dir.resolve(kid + SECRET_SUFFIX),
+                        Base64.getEncoder().encodeToString(Jwts.SIG.HS256.key().build().getEncoded()));
+                case ES256, EdDSA -> {
+                    KeyPair pair = algorithm == Algorithm.ES256
+                            ? Jwts.SIG.ES256.keyPair().build()
+                            : Jwks.CRV.Ed25519.keyPair().build();
+                    // Public key first: a private key without it is ignored by load()
+                    writeAtomically(dir.resolve(kid + PUBLIC_SUFFIX), pem("PUBLIC KEY", pair.getPublic().getEncoded()));
+                    writeAtomically(dir.resolve(kid + PRIVATE_SUFFIX), pem("PRIVATE KEY", pair.getPrivate().getEncoded()));
+                }
+            }
+        }
+
+        private void delete(String kid) throws IOException {
+            Files.deleteIfExists(dir.resolve(kid + SECRET_SUFFIX));
+            Files.deleteIfExists(dir.resolve(kid + PRIVATE_SUFFIX));
+            Files.deleteIfExists(dir.resolve(kid + PUBLIC_SUFFIX));
+        }
+
+        private void writeAtomically(Path target, String content) throws IOException {
+            Path tmp = Files.createTempFile(dir, ".tmp-", ".part");
+            Files.writeString(tmp, content);
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static final class KeyStoreSource implements Source {
+        private final Path file;
+        private final char[] password;
+
+        private KeyStoreSource(Path file, char[] password) {
+            this.file = file;
+            this.password = password;
+        }
+
+        @Override
+        public List<Entry> load() throws IOException {
+            try (InputStream in = Files.newInputStream(file)) {
+                KeyStore keyStore = KeyStore.getInstance("PKCS12");
+                keyStore.load(in, password);
+
+                List<Entry> entries = new ArrayList<>();
+                for (String alias : Collections.list(keyStore.aliases())) {
+                    Instant created = keyStore.getCreationDate(alias).toInstant();
+                    if (keyStore.isKeyEntry(alias)) {
+                        Key key = keyStore.getKey(alias, password);
+                        Certificate certificate = keyStore.getCertificate(alias);
+                        Key verification = certificate != null ? certificate.getPublicKey() : key;
+                        entries.add(new Entry(alias, key, verification, created));
+                    } else if (keyStore.isCertificateEntry(alias)) {
+                        entries.add(new Entry(alias, null, keyStore.getCertificate(alias).getPublicKey(), created));
+                    }
+                }
+                return entries;
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Cannot read keystore " + file, e);
+            }
+        }
+    }
+
+    private static PrivateKey readPrivateKey(Path file) throws IOException {
+        PKCS8EncodedKeySpec spec = new PKCS8EncodedKeySpec(readPem(file));
+        for (String algorithm : new String[] {"EC", "EdDSA"}) {
+            try {
+                return KeyFactory.getInstance(algorithm).generatePrivate(spec);
+            } catch (GeneralSecurityException e) {
+                // try the next algorithm
+            }
+        }
+        throw new IOException("Unsupported private key in " + file + " (expected EC P-256 or Ed25519)");
+    }
+
+    private static PublicKey readPublicKey(Path file) throws IOException {
+        X509EncodedKeySpec spec = new X509EncodedKeySpec(readPem(file));
+        for (String algorithm : new String[] {"EC", "EdDSA"}) {
+            try {
+                return KeyFactory.getInstance(algorithm).generatePublic(spec);
+            } catch (GeneralSecurityException e) {
+                // try the next algorithm
+            }
+        }
+        throw new IOException("Unsupported public key in " + file + " (expected EC P-256 or Ed25519)");
+    }
+
+    private static byte[] readPem(Path file) throws IOException {
+        StringBuilder base64 = new StringBuilder();
+        for (String line : Files.readAllLines(file, StandardCharsets.US_ASCII)) {
+            if (!line.startsWith("-----")) {
+                base64.append(line.trim());
+            }
+        }
+        return Base64.getDecoder().decode(base64.toString());
+    }
+
+    private static String pem(String type, byte[] der) {
+        return "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, new byte[] {'\n'}).encodeToString(der)
+                + "\n-----END " + type + "-----\n";
+    }
+}
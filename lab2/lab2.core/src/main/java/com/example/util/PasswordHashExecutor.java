@@ -0,0 +1,85 @@
+package com.example.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Dedicated pool for BCrypt work so that hashing bursts cannot occupy every servlet
+ * container thread. The queue is bounded: once it is full {@link #submit} fails
+ * immediately with {@link RejectedExecutionException} instead of queueing more work.
+ */
+@Slf4j
+public class PasswordHashExecutor implements AutoCloseable {
+    public static final String THREADS_PROPERTY = "lab2.hash.threads";
+    public static final String QUEUE_PROPERTY = "lab2.hash.queue";
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private final ThreadPoolExecutor pool;
+    private final LongAdder rejected = new LongAdder();
+
+    public PasswordHashExecutor(int threads, int queueCapacity) {
+        this.pool = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new HashThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("Password hashing pool started: threads={}, queue={}", threads, queueCapacity);
+    }
+
+    public static PasswordHashExecutor fromSystemProperties() {
+        int threads = Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        int queue = Integer.getInteger(QUEUE_PROPERTY, DEFAULT_QUEUE_CAPACITY);
+        return new PasswordHashExecutor(threads, queue);
+    }
+
+    /**
+     * @throws RejectedExecutionException if the queue is full or the pool is shut down
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, pool);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private static class HashThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "password-hash-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -4,9 +4,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.regex.Pattern;
+
 @Slf4j
 public class PasswordUtil {
-    private static final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    public static final int DEFAULT_STRENGTH = 10;
+    private static final int MIN_STRENGTH = 4;
+    private static final int MAX_STRENGTH = 16;
+    private static final int CALIBRATION_STRENGTH = 8;
+    // Same shape BCryptPasswordEncoder.matches() accepts: version, two-digit cost, 22 + 31 chars of salt and hash
+    private static final Pattern BCRYPT_HASH = Pattern.compile("\\$2[aby]?\\$\\d\\d\\$[./0-9A-Za-z]{53}");
+
+    private static volatile int strength = DEFAULT_STRENGTH;
+    private static volatile PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(DEFAULT_STRENGTH);
 
     public static String hashPassword(String plainPassword) {
         try {
@@ -25,4 +35,73 @@ public class PasswordUtil {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * A stored hash needs rehashing when it was produced with a different cost than the
+     * current one, so raising or lowering the cost takes effect on the user's next login.
+     */
+    public static boolean needsRehash(String hashedPassword) {
+        int cost = costOf(hashedPassword);
+        return cost > 0 && cost != strength;
+    }
+
+    /**
+     * Whether {@code hashedPassword} is a well-formed BCrypt hash with a cost this class
+     * accepts, e.g. for hashes imported from elsewhere. A cost other than the current one
+     * is fine: {@link #needsRehash} upgrades it on the user's next login.
+     */
+    public static boolean isBcryptHash(String hashedPassword) {
+        if (hashedPassword == null || !BCRYPT_HASH.matcher(hashedPassword).matches()) {
+            return false;
+        }
+        int cost = costOf(hashedPassword);
+        return cost >= MIN_STRENGTH && cost <= MAX_STRENGTH;
+    }
+
+    public static int getStrength() {
+        return strength;
+    }
+
+    public static void setStrength(int newStrength) {
+        if (newStrength < MIN_STRENGTH || newStrength > MAX_STRENGTH) {
+            throw new IllegalArgumentException("BCrypt strength must be between " + MIN_STRENGTH + " and " + MAX_STRENGTH);
+        }
+        passwordEncoder = new BCryptPasswordEncoder(newStrength);
+        strength = newStrength;
+        log.info("BCrypt strength set to {}", newStrength);
+    }
+
+    /**
+     * Picks the cost whose hash time on this machine is closest to {@code targetMillis}
+     * and makes it the current strength. Each cost step doubles the work, so a single
+     * measurement at a low cost is enough to extrapolate.
+     */
+    public static int calibrate(long targetMillis) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(CALIBRATION_STRENGTH);
+        probe.encode("calibration");
+
+        long start = System.nanoTime();
+        probe.encode("calibration");
+        double probeMillis = Math.max((System.nanoTime() - start) / 1_000_000.0, 0.01);
+
+        long extraSteps = Math.round(Math.log(targetMillis / probeMillis) / Math.log(2));
+        int cost = (int) Math.max(MIN_STRENGTH, Math.min(MAX_STRENGTH, CALIBRATION_STRENGTH + extraSteps));
+
+        log.info("BCrypt calibration: cost {} took {} ms, target {} ms -> cost {}",
+                CALIBRATION_STRENGTH, String.format("%.2f", probeMillis), targetMillis, cost);
+        setStrength(cost);
+        return cost;
+    }
+
+    private static int costOf(String hashedPassword) {
+        // $2a$10$... - the cost is the two digits after the version prefix
+        if (hashedPassword == null || hashedPassword.length() < 7 || hashedPassword.charAt(6) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hashedPassword.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.util;
+
+import com.example.model.AuthPrincipal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory denylist consulted on every token verification, so a revocation takes effect
+ * without a database query per request. Two kinds of entries:
+ * <ul>
+ *     <li>a single access token, by {@code jti}, kept until that token expires;</li>
+ *     <li>a user, revoking every token issued before a cut-off, kept for one access-token
+ *     lifetime after the cut-off, since no older token can still be valid after that.</li>
+ * </ul>
+ * Because access tokens are short-lived the list stays small; {@link #purgeExpired}
+ * drops entries that can no longer match. Entries are idempotent, so a node can apply
+ * the same revocation from its own request and from a sync round.
+ */
+@Slf4j
+public class TokenRevocationList {
+    private final long accessTtlMillis;
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final Map<String, Long> revokedUsers = new ConcurrentHashMap<>();
+
+    public TokenRevocationList(Duration accessTtl) {
+        this.accessTtlMillis = accessTtl.toMillis();
+    }
+
+    public void revokeToken(String tokenId, Instant expiresAt) {
+        revokedTokens.merge(tokenId, expiresAt.toEpochMilli(), Math::max);
+    }
+
+    /**
+     * Revokes every token of {@code userId} issued before {@code issuedBefore}. JWT
+     * {@code iat} has one-second resolution, so the cut-off is rounded up to the next
+     * second: every token issued in the same second as the revocation is caught, including
+     * one minted from a stolen refresh token just before it. The price is that a token
+     * issued in that second after the revocation is revoked too, and its holder has to log
+     * in again.
+     */
+    public void revokeUser(String userId, Instant issuedBefore) {
+        revokedUsers.merge(userId, (issuedBefore.getEpochSecond() + 1) * 1000, Math::max);
+    }
+
+    public boolean isRevoked(AuthPrincipal principal) {
+        // Common case: nothing revoked recently, so skip the lookups entirely
+        if (revokedTokens.isEmpty() && revokedUsers.isEmpty()) {
+            return false;
+        }
+        if (principal.getTokenId() != null && revokedTokens.containsKey(principal.getTokenId())) {
+            return true;
+        }
+        Long cutoff = revokedUsers.get(principal.getUserId());
+        return cutoff != null && (principal.getIssuedAt() == null || principal.getIssuedAt().toEpochMilli() < cutoff);
+    }
+
+    public void purgeExpired(Instant now) {
+        long nowMillis = now.toEpochMilli();
+        int before = size();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt <= nowMillis);
+        revokedUsers.values().removeIf(cutoff -> cutoff + accessTtlMillis <= nowMillis);
+        int purged = before - size();
+        if (purged > 0) {
+            log.debug("Purged {} expired revocations, {} left", purged, size());
+        }
+    }
+
+    public int size() {
+        return revokedTokens.size() + revokedUsers.size();
+    }
+
+    public Duration getAccessTtl() {
+        return Duration.ofMillis(accessTtlMillis);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.util;
+
+import com.example.model.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+
+import javax.crypto.SecretKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Signs and verifies JWTs with the keys of a {@link KeyRing}. The parser is built once
+ * and shared, since {@link JwtParser} is immutable and thread-safe, and resolves the
+ * verification key from the token's {@code kid} header through the ring; expiry is
+ * computed with epoch-millisecond arithmetic so issuing a token needs no time-zone lookup.
+ * Every token carries a random {@code jti} so it can be revoked individually.
+ */
+public class TokenService {
+    private final KeyRing keyRing;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final JwtParser parser;
+
+    public TokenService(SecretKey signingKey, Duration ttl) {
+        this(signingKey, ttl, Clock.systemUTC());
+    }
+
+    public TokenService(SecretKey signingKey, Duration ttl, Clock clock) {
+        this(KeyRing.ofKey("default", signingKey), ttl, clock);
+    }
+
+    public TokenService(KeyRing keyRing, Duration ttl) {
+        this(keyRing, ttl, Clock.systemUTC());
+    }
+
+    public TokenService(KeyRing keyRing, Duration ttl, Clock clock) {
+        this.keyRing = keyRing;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.parser = Jwts.parser()
+                .keyLocator(keyRing)
+                .clock(() -> new Date(clock.millis()))
+                .build();
+    }
+
+    public String issue(User user) {
+        long now = clock.millis();
+        KeyRing.SigningKey signingKey = keyRing.getSigningKey();
+
+        return Jwts.builder()
+                .header().keyId(signingKey.kid()).and()
+                .id(UUID.randomUUID().toString())
+                .subject(user.getId())
+                .claim("username", user.getUsername())
+                .claim("email", user.getEmail())
+                .claim("role", user.getRole().name())
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + ttlMillis))
+                .signWith(signingKey.key())
+                .compact();
+    }
+
+    /**
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+     */
+    public Claims parse(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    public Duration getTtl() {
+        return Duration.ofMillis(ttlMillis);
+    }
+}
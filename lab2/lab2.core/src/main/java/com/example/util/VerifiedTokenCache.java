@@ -0,0 +1,159 @@
+package com.example.util;
+
+import com.example.metrics.PrometheusText;
+import com.example.model.AuthPrincipal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of already verified tokens. Entries are keyed by the SHA-256 digest
+ * of the token, so raw bearer tokens are never retained, and are dropped once the
+ * token's {@code exp} has passed.
+ */
+@Slf4j
+public class VerifiedTokenCache implements PrometheusText.Source {
+    // Cloned for each digest: requests may each run on a fresh virtual thread, where a
+    // ThreadLocal would allocate a digest per request and never reuse it
+    private static final MessageDigest SHA_256 = newSha256();
+
+    private final int maxEntries;
+    private final Map<ByteBuffer, AuthPrincipal> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public VerifiedTokenCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    public Optional<AuthPrincipal> get(String token) {
+        ByteBuffer key = digest(token);
+        AuthPrincipal principal = entries.get(key);
+
+        if (principal == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        if (principal.isExpired(Instant.now())) {
+            entries.remove(key, principal);
+            misses.increment();
+            return Optional.empty();
+        }
+
+        hits.increment();
+        return Optional.of(principal);
+    }
+
+    public void put(String token, AuthPrincipal principal) {
+        if (entries.size() >= maxEntries) {
+            evict();
+        }
+        entries.put(digest(token), principal);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    @Override
+    public void writePrometheus(Appendable out) throws IOException {
+        PrometheusText.writeType(out, "lab2_token_cache_requests_total", "counter");
+        PrometheusText.writeSample(out, "lab2_token_cache_requests_total", "result=\"hit\"", getHitCount());
+        PrometheusText.writeSample(out, "lab2_token_cache_requests_total", "result=\"miss\"", getMissCount());
+        PrometheusText.writeType(out, "lab2_token_cache_hit_ratio", "gauge");
+        PrometheusText.writeSample(out, "lab2_token_cache_hit_ratio", "", getHitRatio());
+        PrometheusText.writeType(out, "lab2_token_cache_evictions_total", "counter");
+        PrometheusText.writeSample(out, "lab2_token_cache_evictions_total", "", getEvictionCount());
+        PrometheusText.writeType(out, "lab2_token_cache_size", "gauge");
+        PrometheusText.writeSample(out, "lab2_token_cache_size", "", size());
+    }
+
+    /**
+     * Drops expired entries first; if the cache is still full, removes arbitrary
+     * entries until there is room for roughly a tenth of the capacity.
+     */
+    private void evict() {
+        Instant now = Instant.now();
+        entries.values().removeIf(principal -> {
+            boolean expired = principal.isExpired(now);
+            if (expired) {
+                evictions.increment();
+            }
+            return expired;
+        });
+
+        int target = maxEntries - Math.max(1, maxEntries / 10);
+        Iterator<ByteBuffer> it = entries.keySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+        log.debug("Evicted verified tokens, size now {}", entries.size());
+    }
+
+    private static ByteBuffer digest(String token) {
+        MessageDigest md;
+        try {
+            md = (MessageDigest) SHA_256.clone();
+        } catch (CloneNotSupportedException e) {
+            md = newSha256();
+        }
+        return ByteBuffer.wrap(md.digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "VerifiedTokenCache{" +
+                "size=" + entries.size() +
+                ", hits=" + hits.sum() +
+                ", misses=" + misses.sum() +
+                ", evictions=" + evictions.sum() +
+                '}';
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.bench;
+
+import com.example.model.User;
+import com.example.util.TokenService;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the original per-call JWT construction in JwtUtil ("legacy") with
+ * {@link TokenService}. Run {@link #main} from the IDE or with the test classpath;
+ * the GC profiler reports {@code gc.alloc.rate.norm} (bytes allocated per op).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenServiceBenchmark {
+    private SecretKey key;
+    private TokenService tokenService;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        key = Jwts.SIG.HS256.key().build();
+        tokenService = new TokenService(key, Duration.ofHours(24));
+
+        user = new User("bench", "bench@example.com", "hash");
+        user.setId("65f0c0ffee0000000000abcd");
+        token = tokenService.issue(user);
+    }
+
+    @Benchmark
+    public String legacySign() {
+        LocalDateTime expiration = LocalDateTime.now().plusHours(24);
+        Date expirationDate = Date.from(expiration.atZone(ZoneId.systemDefault()).toInstant());
+
+        return Jwts.builder()
+                .subject(user.getId())
+                .claim("username", user.getUsername())
+                .claim("email", user.getEmail())
+                .claim("role", user.getRole().toString())
+                .issuedAt(new Date())
+                .expiration(expirationDate)
+                .signWith(key)
+                .compact();
+    }
+
+    @Benchmark
+    public String serviceSign() {
+        return tokenService.issue(user);
+    }
+
+    @Benchmark
+    public Object legacyVerify() {
+        return Jwts.parser()
+                .verifyWith(key)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    @Benchmark
+    public Object serviceVerify() {
+        return tokenService.parse(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TokenServiceBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.util;
+
+import com.example.model.User;
+import io.jsonwebtoken.Jwts;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyStore;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+public class KeyRingTest extends TestCase {
+    private static final Duration TTL = Duration.ofMinutes(15);
+
+    private Path dir;
+    private User user;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("keyring-test");
+        user = new User("u", "u@example.com", "hash");
+        user.setId("42");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    public void testTokensSurviveReload() throws IOException {
+        KeyRing first = KeyRing.fromDirectory(dir, KeyRing.Algorithm.HS256, Clock.systemUTC());
+        String token = new TokenService(first, TTL).issue(user);
+
+        // A restarted node, or another one sharing the directory
+        KeyRing second = KeyRing.fromDirectory(dir, KeyRing.Algorithm.HS256, Clock.systemUTC());
+        assertEquals("42", new TokenService(second, TTL).parse(token).getSubject());
+        assertEquals(first.getKeyIds(), second.getKeyIds());
+    }
+
+    public void testRotationKeepsOldKeysVerifiable() throws IOException {
+        KeyRing ring = KeyRing.fromDirectory(dir, KeyRing.Algorithm.HS256, Clock.systemUTC());
+        TokenService service = new TokenService(ring, TTL);
+        String oldToken = service.issue(user);
+        String oldKid = ring.getSigningKey().kid();
+
+        String newKid = ring.rotate();
+        String newToken = service.issue(user);
+
+        assertFalse(oldKid.equals(newKid));
+        assertEquals(newKid, ring.getSigningKey().kid());
+        assertEquals("42", service.parse(oldToken).getSubject());
+        assertEquals("42", service.parse(newToken).getSubject());
+    }
+
+    public void testAsymmetricKeysAndVerifyOnlyRing() throws IOException {
+        for (KeyRing.Algorithm algorithm : List.of(KeyRing.Algorithm.ES256, KeyRing.Algorithm.EdDSA)) {
+            KeyRing signer = KeyRing.fromDirectory(dir, algorithm, Clock.systemUTC());
+            signer.rotate();
+            String token = new TokenService(signer, TTL).issue(user);
+
+            // A verification-only node gets the public keys and nothing else
+            Path publicOnly = Files.createTempDirectory("keyring-public");
+            try (var files = Files.list(dir)) {
+                for (Path file : files.filter(f -> f.toString().endsWith(".pub.pem")).toList()) {
+                    Files.copy(file, publicOnly.resolve(file.getFileName()));
+                }
+            }
+            KeyRing verifier = KeyRing.fromDirectory(publicOnly, algorithm, Clock.systemUTC());
+            assertFalse(verifier.canSign());
+            assertEquals("42", new TokenService(verifier, TTL).parse(token).getSubject());
+
+            try (var files = Files.list(publicOnly)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(publicOnly);
+        }
+    }
+
+    public void testKeyStoreRing() throws Exception {
+        char[] password = "changeit".toCharArray();
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, password);
+        keyStore.setEntry("2025-01", new KeyStore.SecretKeyEntry(Jwts.SIG.HS256.key().build()),
+                new KeyStore.PasswordProtection(password));
+        Path file = dir.resolve("keys.p12");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            keyStore.store(out, password);
+        }
+
+        KeyRing ring = KeyRing.fromKeyStore(file, password);
+        assertEquals("2025-01", ring.getSigningKey().kid());
+        TokenService service = new TokenService(ring, TTL);
+        assertEquals("42", service.parse(service.issue(user)).getSubject());
+    }
+
+    public void testUnknownKidIsRejected() throws IOException {
+        KeyRing ring = KeyRing.fromDirectory(dir, KeyRing.Algorithm.HS256, Clock.systemUTC());
+        String foreign = new TokenService(KeyRing.ofKey("other", Jwts.SIG.HS256.key().build()), TTL).issue(user);
+
+        try {
+            new TokenService(ring, TTL).parse(foreign);
+            fail("token signed with a key outside the ring was accepted");
+        } catch (RuntimeException expected) {
+        }
+    }
+
+    public void testRotatedKeySignsOnlyOncePublished() throws IOException {
+        AdjustableClock clock = new AdjustableClock();
+        KeyRing rotating = KeyRing.fromDirectory(dir, KeyRing.Algorithm.HS256, clock, Duration.ofSeconds(60));
+        // Another node sharing the directory, which does not reload in this test
+        KeyRing other = KeyRing.fromDirectory(dir, KeyRing.Algorithm.HS256, Clock.systemUTC());
+        TokenService otherService = new TokenService(other, TTL);
+        String oldKid = rotating.getSigningKey().kid();
+
+        String newKid = rotating.rotate();
+        assertEquals(oldKid, rotating.getSigningKey().kid());
+        assertEquals("42", otherService.parse(new TokenService(rotating, TTL).issue(user)).getSubject());
+
+        clock.offset = Duration.ofSeconds(61);
+        assertEquals(newKid, rotating.getSigningKey().kid());
+        assertFalse(other.getKeyIds().contains(newKid));
+        // The unknown kid makes the other node reload instead of rejecting the token
+        assertEquals("42", otherService.parse(new TokenService(rotating, TTL).issue(user)).getSubject());
+        assertTrue(other.getKeyIds().contains(newKid));
+    }
+
+    public void testPruneRemovesOnlyRetiredKeys() throws IOException {
+        KeyRing ring = KeyRing.fromDirectory(dir, KeyRing.Algorithm.HS256, Clock.systemUTC());
+        String oldest = ring.getSigningKey().kid();
+        String middle = ring.rotate();
+        String newest = ring.rotate();
+
+        // The middle key was superseded an hour ago, the newest one just now
+        Instant now = Instant.now();
+        touch(oldest, now.minus(Duration.ofHours(3)));
+        touch(middle, now.minus(Duration.ofHours(1)));
+        ring.reload();
+
+        assertEquals(List.of(oldest), ring.prune(TTL));
+        assertEquals(List.of(middle, newest), ring.getKeyIds());
+        assertEquals(newest, ring.getSigningKey().kid());
+    }
+
+    private void touch(String kid, Instant time) throws IOException {
+        Files.setLastModifiedTime(dir.resolve(kid + ".secret"), FileTime.from(time));
+    }
+
+    private static final class AdjustableClock extends Clock {
+        volatile Duration offset = Duration.ZERO;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.now().plus(offset);
+        }
+    }
+}
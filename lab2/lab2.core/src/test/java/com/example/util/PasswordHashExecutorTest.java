@@ -0,0 +1,50 @@
+package com.example.util;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+public class PasswordHashExecutorTest extends TestCase {
+
+    public void testRejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (PasswordHashExecutor executor = new PasswordHashExecutor(1, 1)) {
+            executor.submit(() -> await(release));
+            executor.submit(() -> await(release));
+
+            try {
+                executor.submit(() -> await(release));
+                fail("Expected rejection once the queue is full");
+            } catch (RejectedExecutionException expected) {
+                assertEquals(1, executor.getRejectedCount());
+            } finally {
+                release.countDown();
+            }
+        }
+    }
+
+    public void testNeedsRehashWhenCostChanges() {
+        String hash = PasswordUtil.hashPassword("secret1");
+        assertFalse(PasswordUtil.needsRehash(hash));
+
+        int original = PasswordUtil.getStrength();
+        try {
+            PasswordUtil.setStrength(original - 1);
+            assertTrue(PasswordUtil.needsRehash(hash));
+            assertTrue(PasswordUtil.verifyPassword("secret1", hash));
+        } finally {
+            PasswordUtil.setStrength(original);
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            latch.await();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.util;
+
+import com.example.model.AuthPrincipal;
+import com.example.model.User;
+import io.jsonwebtoken.Jwts;
+import junit.framework.TestCase;
+
+import java.time.Duration;
+import java.time.Instant;
+
+public class TokenRevocationListTest extends TestCase {
+    private static final Instant NOW = Instant.parse("2025-01-01T12:00:00Z");
+
+    private static AuthPrincipal principal(String userId, String tokenId, Instant issuedAt) {
+        return new AuthPrincipal(userId, User.Role.USER, issuedAt.plusSeconds(900), tokenId, issuedAt);
+    }
+
+    public void testRevokedToken() {
+        TokenRevocationList revocations = new TokenRevocationList(Duration.ofMinutes(15));
+        revocations.revokeToken("jti-1", NOW.plusSeconds(900));
+
+        assertTrue(revocations.isRevoked(principal("42", "jti-1", NOW)));
+        assertFalse(revocations.isRevoked(principal("42", "jti-2", NOW)));
+    }
+
+    public void testRevokedUserOnlyAffectsOlderTokens() {
+        TokenRevocationList revocations = new TokenRevocationList(Duration.ofMinutes(15));
+        revocations.revokeUser("42", NOW.plusMillis(300));
+
+        assertTrue(revocations.isRevoked(principal("42", "a", NOW.minusSeconds(60))));
+        // Issued in the same second as the revocation: iat cannot tell before from after,
+        // so it is revoked rather than risk leaving a stolen token valid
+        assertTrue(revocations.isRevoked(principal("42", "b", NOW)));
+        assertFalse(revocations.isRevoked(principal("42", "c", NOW.plusSeconds(1))));
+        assertFalse(revocations.isRevoked(principal("7", "d", NOW.minusSeconds(60))));
+    }
+
+    public void testPurgeExpired() {
+        TokenRevocationList revocations = new TokenRevocationList(Duration.ofMinutes(15));
+        revocations.revokeToken("jti-1", NOW.plusSeconds(60));
+        revocations.revokeUser("42", NOW);
+        assertEquals(2, revocations.size());
+
+        revocations.purgeExpired(NOW.plusSeconds(61));
+        assertEquals(1, revocations.size());
+
+        revocations.purgeExpired(NOW.plus(Duration.ofMinutes(15)).plusSeconds(1));
+        assertEquals(0, revocations.size());
+    }
+
+    public void testIssuedTokensCarryId() {
+        TokenService service = new TokenService(Jwts.SIG.HS256.key().build(), Duration.ofMinutes(15));
+        User user = new User("u", "u@example.com", "hash");
+        user.setId("42");
+
+        assertNotNull(service.parse(service.issue(user)).getId());
+        assertFalse(service.parse(service.issue(user)).getId().equals(service.parse(service.issue(user)).getId()));
+    }
+}
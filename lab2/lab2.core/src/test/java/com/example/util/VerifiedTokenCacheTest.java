@@ -0,0 +1,57 @@
+package com.example.util;
+
+import com.example.model.AuthPrincipal;
+import com.example.model.User;
+import junit.framework.TestCase;
+
+import java.time.Instant;
+
+public class VerifiedTokenCacheTest extends TestCase {
+
+    public void testHitAfterPut() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        AuthPrincipal principal = new AuthPrincipal("42", User.Role.USER, Instant.now().plusSeconds(60), null, null);
+
+        assertFalse(cache.get("token").isPresent());
+        cache.put("token", principal);
+
+        assertEquals(principal, cache.get("token").orElse(null));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    public void testExpiredEntryIsAMiss() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        cache.put("token", new AuthPrincipal("42", User.Role.USER, Instant.now().minusSeconds(1), null, null));
+
+        assertFalse(cache.get("token").isPresent());
+        assertEquals(0, cache.size());
+    }
+
+    public void testSizeIsBounded() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        Instant exp = Instant.now().plusSeconds(60);
+        for (int i = 0; i < 1_000; i++) {
+            cache.put("token-" + i, new AuthPrincipal(String.valueOf(i), User.Role.USER, exp, null, null));
+        }
+
+        assertTrue(cache.size() <= 100);
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    public void testPrometheusOutput() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        cache.put("token", new AuthPrincipal("42", User.Role.USER, Instant.now().plusSeconds(60), null, null));
+        cache.get("token");
+        cache.get("other");
+
+        StringBuilder out = new StringBuilder();
+        cache.writePrometheus(out);
+        String text = out.toString();
+
+        assertTrue(text.contains("lab2_token_cache_requests_total{result=\"hit\"} 1\n"));
+        assertTrue(text.contains("lab2_token_cache_requests_total{result=\"miss\"} 1\n"));
+        assertTrue(text.contains("lab2_token_cache_hit_ratio 0.5\n"));
+        assertTrue(text.contains("lab2_token_cache_size 1\n"));
+    }
+}
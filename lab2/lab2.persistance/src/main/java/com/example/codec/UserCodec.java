@@ -0,0 +1,158 @@
+package com.example.codec;
+
+import com.example.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Maps {@link User} directly to and from BSON, without an intermediate {@code Document}.
+ * Timestamps keep the existing storage format (local time in the JVM's default zone,
+ * stored as a BSON date); the zone is resolved once instead of per field.
+ */
+@Slf4j
+public class UserCodec implements CollectibleCodec<User> {
+    private final ZoneId zone;
+    private final ZoneOffset fixedOffset;
+
+    public UserCodec() {
+        this(ZoneId.systemDefault());
+    }
+
+    public UserCodec(ZoneId zone) {
+        this.zone = zone;
+        this.fixedOffset = zone.getRules().isFixedOffset() ? zone.getRules().getOffset(Instant.EPOCH) : null;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, User user, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+
+        if (user.getId() != null) {
+            writer.writeObjectId("_id", new ObjectId(user.getId()));
+        }
+        writeNullableString(writer, "username", user.getUsername());
+        writeNullableString(writer, "email", user.getEmail());
+        writeNullableString(writer, "passwordHash", user.getPasswordHash());
+        writer.writeString("role", user.getRole().name());
+        if (user.getCreatedAt() != null) {
+            writer.writeDateTime("createdAt", toEpochMillis(user.getCreatedAt()));
+        }
+        if (user.getUpdatedAt() != null) {
+            writer.writeDateTime("updatedAt", toEpochMillis(user.getUpdatedAt()));
+        }
+
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public User decode(BsonReader reader, DecoderContext decoderContext) {
+        User user = new User();
+        User.Role role = null;
+        LocalDateTime updatedAt = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+
+            switch (name) {
+                case "_id" -> user.setId(reader.readObjectId().toHexString());
+                case "username" -> user.setUsername(reader.readString());
+                case "email" -> user.setEmail(reader.readString());
+                case "passwordHash" -> user.setPasswordHash(reader.readString());
+                case "role" -> role = parseRole(reader.readString());
+                case "createdAt" -> user.setCreatedAt(fromEpochMillis(reader.readDateTime()));
+                case "updatedAt" -> updatedAt = fromEpochMillis(reader.readDateTime());
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        if (role == null) {
+            log.warn("Missing or null role for user '{}', defaulting to USER", user.getUsername());
+            role = User.Role.USER;
+        }
+        user.setRole(role);
+        // set last: setPasswordHash() also touches updatedAt
+        if (updatedAt != null) {
+            user.setUpdatedAt(updatedAt);
+        }
+        return user;
+    }
+
+    @Override
+    public Class<User> getEncoderClass() {
+        return User.class;
+    }
+
+    @Override
+    public User generateIdIfAbsentFromDocument(User user) {
+        if (user.getId() == null) {
+            user.setId(new ObjectId().toHexString());
+        }
+        return user;
+    }
+
+    @Override
+    public boolean documentHasId(User user) {
+        return user.getId() != null;
+    }
+
+    @Override
+    public BsonValue getDocumentId(User user) {
+        if (user.getId() == null) {
+            throw new IllegalStateException("User has no id");
+        }
+        return new BsonObjectId(new ObjectId(user.getId()));
+    }
+
+    private User.Role parseRole(String role) {
+        return switch (role) {
+            case "USER" -> User.Role.USER;
+            case "ADMIN" -> User.Role.ADMIN;
+            default -> {
+                log.warn("Invalid role '{}', defaulting to USER", role);
+                yield User.Role.USER;
+            }
+        };
+    }
+
+    private long toEpochMillis(LocalDateTime dateTime) {
+        if (fixedOffset != null) {
+            return dateTime.toEpochSecond(fixedOffset) * 1000 + dateTime.getNano() / 1_000_000;
+        }
+        return dateTime.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    private LocalDateTime fromEpochMillis(long epochMillis) {
+        if (fixedOffset != null) {
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000),
+                    (int) Math.floorMod(epochMillis, 1000) * 1_000_000, fixedOffset);
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone);
+    }
+
+    private static void writeNullableString(BsonWriter writer, String name, String value) {
+        if (value == null) {
+            writer.writeNull(name);
+        } else {
+            writer.writeString(name, value);
+        }
+    }
+}
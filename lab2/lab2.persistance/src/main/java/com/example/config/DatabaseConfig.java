@@ -1,26 +1,54 @@
 package com.example.config;
 
+import com.example.codec.UserCodec;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadPreference;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
 import lombok.Getter;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the shared MongoClient. Settings come from {@code mongo.properties} on the
+ * classpath; any key can be overridden with a system property of the same name
+ * (e.g. {@code -Dmongo.pool.maxSize=200}).
+ */
 public class DatabaseConfig {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseConfig.class);
-    private static final String CONNECTION_STRING = "mongodb://localhost:27017";
-    private static final String DATABASE_NAME = "lab2";
+    private static final String PROPERTIES_FILE = "mongo.properties";
+
+    // Typed codecs first, so MongoCollection<User> decodes straight from the BSON reader
+    private static final CodecRegistry CODEC_REGISTRY = CodecRegistries.fromRegistries(
+            CodecRegistries.fromCodecs(new UserCodec()),
+            MongoClientSettings.getDefaultCodecRegistry());
 
     private static MongoClient mongoClient;
     @Getter
     private static MongoDatabase database;
+    @Getter
+    private static final MongoMetrics metrics = new MongoMetrics();
 
     static {
         try {
-            mongoClient = MongoClients.create(CONNECTION_STRING);
-            database = mongoClient.getDatabase(DATABASE_NAME);
-            logger.info("Connected to MongoDB database: {}", DATABASE_NAME);
+            Properties properties = loadProperties();
+            String databaseName = properties.getProperty("mongo.database");
+
+            mongoClient = MongoClients.create(buildSettings(properties));
+            database = mongoClient.getDatabase(databaseName);
+            logger.info("Connected to MongoDB database: {}", databaseName);
         } catch (Exception e) {
             logger.error("Failed to connect to MongoDB", e);
             throw new RuntimeException("Database connection failed", e);
@@ -34,6 +62,74 @@ public class DatabaseConfig {
         }
     }
 
+    static MongoClientSettings buildSettings(Properties properties) {
+        int minPool = intProperty(properties, "mongo.pool.minSize");
+        int maxPool = intProperty(properties, "mongo.pool.maxSize");
+        long maxWaitMs = intProperty(properties, "mongo.pool.maxWaitMs");
+        long maxIdleMs = intProperty(properties, "mongo.pool.maxIdleMs");
+        int connectTimeoutMs = intProperty(properties, "mongo.socket.connectTimeoutMs");
+        int readTimeoutMs = intProperty(properties, "mongo.socket.readTimeoutMs");
+        long serverSelectionTimeoutMs = intProperty(properties, "mongo.serverSelectionTimeoutMs");
+        ReadPreference readPreference = ReadPreference.valueOf(properties.getProperty("mongo.readPreference"));
+        List<MongoCompressor> compressors = parseCompressors(properties.getProperty("mongo.compressors", ""));
+
+        logger.info("MongoDB pool: min={}, max={}, maxWait={}ms, maxIdle={}ms; socket connect={}ms, read={}ms; "
+                        + "readPreference={}, compressors={}",
+                minPool, maxPool, maxWaitMs, maxIdleMs, connectTimeoutMs, readTimeoutMs,
+                readPreference.getName(), properties.getProperty("mongo.compressors"));
+
+        return MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(properties.getProperty("mongo.uri")))
+                .applyToConnectionPoolSettings(pool -> pool
+                        .minSize(minPool)
+                        .maxSize(maxPool)
+                        .maxWaitTime(maxWaitMs, TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(maxIdleMs, TimeUnit.MILLISECONDS)
+                        .addConnectionPoolListener(metrics))
+                .applyToSocketSettings(socket -> socket
+                        .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                        .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS))
+                .applyToClusterSettings(cluster -> cluster
+                        .serverSelectionTimeout(serverSelectionTimeoutMs, TimeUnit.MILLISECONDS))
+                .readPreference(readPreference)
+                .compressorList(compressors)
+                .addCommandListener(metrics)
+                .codecRegistry(CODEC_REGISTRY)
+                .build();
+    }
+
+    static Properties loadProperties() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = DatabaseConfig.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE)) {
+            if (in == null) {
+                throw new IOException(PROPERTIES_FILE + " not found on classpath");
+            }
+            properties.load(in);
+        }
+        for (String key : properties.stringPropertyNames()) {
+            String override = System.getProperty(key);
+            if (override != null) {
+                properties.setProperty(key, override);
+            }
+        }
+        return properties;
+    }
 
+    private static List<MongoCompressor> parseCompressors(String value) {
+        List<MongoCompressor> compressors = new ArrayList<>();
+        for (String name : value.split(",")) {
+            switch (name.trim().toLowerCase()) {
+                case "" -> { }
+                case "zstd" -> compressors.add(MongoCompressor.createZstdCompressor());
+                case "snappy" -> compressors.add(MongoCompressor.createSnappyCompressor());
+                case "zlib" -> compressors.add(MongoCompressor.createZlibCompressor());
+                default -> throw new IllegalArgumentException("Unknown MongoDB compressor: " + name);
+            }
+        }
+        return compressors;
+    }
 
-}
\ No newline at end of file
+    private static int intProperty(Properties properties, String key) {
+        return Integer.parseInt(properties.getProperty(key).trim());
+    }
+}
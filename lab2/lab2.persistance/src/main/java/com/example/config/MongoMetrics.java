@@ -0,0 +1,154 @@
+package com.example.config;
+
+import com.example.metrics.LatencyHistogram;
+import com.example.metrics.PrometheusText;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Driver listener that tracks connection pool occupancy, checkout latency and
+ * per-command latency. Compare {@link #getMaxInUse()} and the checkout latency
+ * against the servlet container's thread count when sizing {@code mongo.pool.maxSize};
+ * the webapp publishes all of it in its {@code /metrics} scrape.
+ */
+public class MongoMetrics implements ConnectionPoolListener, CommandListener, PrometheusText.Source {
+    private final AtomicInteger maxSize = new AtomicInteger();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger maxInUse = new AtomicInteger();
+
+    private final LatencyHistogram checkoutLatency = new LatencyHistogram();
+    private final Map<ConnectionCheckOutFailedEvent.Reason, LongAdder> checkoutFailures = new ConcurrentHashMap<>();
+
+    private final Map<String, LatencyHistogram> commandLatency = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> commandFailures = new ConcurrentHashMap<>();
+
+    @Override
+    public void connectionPoolCreated(ConnectionPoolCreatedEvent event) {
+        maxSize.set(event.getSettings().getMaxSize());
+    }
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        openConnections.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        openConnections.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        checkoutLatency.recordNanos(event.getElapsedTime(TimeUnit.NANOSECONDS));
+        maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        inUse.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        checkoutLatency.recordNanos(event.getElapsedTime(TimeUnit.NANOSECONDS));
+        checkoutFailures.computeIfAbsent(event.getReason(), reason -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        commandHistogram(event.getCommandName()).recordNanos(event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        commandHistogram(event.getCommandName()).recordNanos(event.getElapsedTime(TimeUnit.NANOSECONDS));
+        commandFailures.computeIfAbsent(event.getCommandName(), name -> new LongAdder()).increment();
+    }
+
+    public int getMaxSize() {
+        return maxSize.get();
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    public int getMaxInUse() {
+        return maxInUse.get();
+    }
+
+    public LatencyHistogram.Snapshot getCheckoutLatency() {
+        return checkoutLatency.snapshot();
+    }
+
+    public Map<ConnectionCheckOutFailedEvent.Reason, Long> getCheckoutFailures() {
+        Map<ConnectionCheckOutFailedEvent.Reason, Long> failures = new ConcurrentHashMap<>();
+        checkoutFailures.forEach((reason, count) -> failures.put(reason, count.sum()));
+        return failures;
+    }
+
+    public Map<String, LatencyHistogram.Snapshot> getCommandLatency() {
+        Map<String, LatencyHistogram.Snapshot> latency = new ConcurrentHashMap<>();
+        commandLatency.forEach((command, histogram) -> latency.put(command, histogram.snapshot()));
+        return latency;
+    }
+
+    public Map<String, Long> getCommandFailures() {
+        Map<String, Long> failures = new ConcurrentHashMap<>();
+        commandFailures.forEach((command, count) -> failures.put(command, count.sum()));
+        return failures;
+    }
+
+    @Override
+    public void writePrometheus(Appendable out) throws IOException {
+        PrometheusText.writeType(out, "lab2_mongo_pool_connections", "gauge");
+        PrometheusText.writeSample(out, "lab2_mongo_pool_connections", "state=\"max\"", getMaxSize());
+        PrometheusText.writeSample(out, "lab2_mongo_pool_connections", "state=\"open\"", getOpenConnections());
+        PrometheusText.writeSample(out, "lab2_mongo_pool_connections", "state=\"in_use\"", getInUse());
+        PrometheusText.writeSample(out, "lab2_mongo_pool_connections", "state=\"in_use_peak\"", getMaxInUse());
+
+        PrometheusText.writeType(out, "lab2_mongo_pool_checkout_micros", "summary");
+        PrometheusText.writeSummary(out, "lab2_mongo_pool_checkout_micros", "", getCheckoutLatency());
+        PrometheusText.writeType(out, "lab2_mongo_pool_checkout_failures_total", "counter");
+        for (Map.Entry<ConnectionCheckOutFailedEvent.Reason, Long> failures : new TreeMap<>(getCheckoutFailures()).entrySet()) {
+            PrometheusText.writeSample(out, "lab2_mongo_pool_checkout_failures_total",
+                    "reason=\"" + failures.getKey().name().toLowerCase() + "\"", failures.getValue());
+        }
+
+        PrometheusText.writeType(out, "lab2_mongo_command_micros", "summary");
+        for (Map.Entry<String, LatencyHistogram.Snapshot> latency : new TreeMap<>(getCommandLatency()).entrySet()) {
+            PrometheusText.writeSummary(out, "lab2_mongo_command_micros",
+                    "command=\"" + latency.getKey() + "\"", latency.getValue());
+        }
+        PrometheusText.writeType(out, "lab2_mongo_command_failures_total", "counter");
+        for (Map.Entry<String, Long> failures : new TreeMap<>(getCommandFailures()).entrySet()) {
+            PrometheusText.writeSample(out, "lab2_mongo_command_failures_total",
+                    "command=\"" + failures.getKey() + "\"", failures.getValue());
+        }
+    }
+
+    private LatencyHistogram commandHistogram(String commandName) {
+        return commandLatency.computeIfAbsent(commandName, name -> new LatencyHistogram());
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.dao;
+
+import com.example.config.DatabaseConfig;
+import com.example.metrics.PrometheusText;
+import com.example.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-through cache in front of the hot {@link UserDao} reads: the profile view by id
+ * ({@code GET /users}) and the auth view by email (login). Caffeine's W-TinyLFU policy
+ * bounds each cache by size; entries also expire after a TTL, and misses are cached
+ * for a shorter negative TTL.
+ * <p>
+ * Only answers from the database are cached: a failed read is logged and answered as
+ * empty, like {@link UserDao} does, without leaving a negative entry behind.
+ * <p>
+ * Writes through this instance invalidate the affected entries. With
+ * {@code -Dlab2.userCache.changeStream=true} (replica set required) a background
+ * change-stream listener also invalidates entries on writes made by other nodes;
+ * without it, other nodes' writes become visible after the TTL. {@link #close()} stops
+ * the listener.
+ * <p>
+ * Credentials therefore get their own TTL ({@code lab2.userCache.credentialTtlSeconds}),
+ * which is only 5 s unless the change stream is on: a password changed or a user deleted
+ * on another node can still log in here for that long, in exchange for absorbing bursts
+ * of logins for the same account. With the change stream the credential TTL defaults to
+ * the profile TTL. Negative credential entries never outlive positive ones.
+ * <p>
+ * Hit ratio, evictions and size of both caches are part of the {@code /metrics} scrape.
+ * <p>
+ * Cached users are shared between callers and must not be mutated.
+ */
+@Slf4j
+public class CachingUserDao extends UserDao implements AutoCloseable, PrometheusText.Source {
+    public static final String MAX_SIZE_PROPERTY = "lab2.userCache.maxSize";
+    public static final String TTL_PROPERTY = "lab2.userCache.ttlSeconds";
+    public static final String CREDENTIAL_TTL_PROPERTY = "lab2.userCache.credentialTtlSeconds";
+    public static final String NEGATIVE_TTL_PROPERTY = "lab2.userCache.negativeTtlSeconds";
+    public static final String CHANGE_STREAM_PROPERTY = "lab2.userCache.changeStream";
+
+    private static final long CHANGE_STREAM_RETRY_MILLIS = 5_000;
+
+    private final Cache<String, Optional<User>> profilesById;
+    private final Cache<String, Optional<User>> credentialsByEmail;
+    // Email each cached credential is keyed by, so a write by id finds it without a scan
+    private final Map<String, String> emailsById = new ConcurrentHashMap<>();
+    private final Thread watcher;
+    private volatile boolean closed;
+    private volatile MongoChangeStreamCursor<?> changeCursor;
+
+    public CachingUserDao() {
+        this(Long.getLong(MAX_SIZE_PROPERTY, 10_000),
+                Duration.ofSeconds(Long.getLong(TTL_PROPERTY, 300)),
+                Duration.ofSeconds(Long.getLong(CREDENTIAL_TTL_PROPERTY,
+                        Boolean.getBoolean(CHANGE_STREAM_PROPERTY) ? Long.getLong(TTL_PROPERTY, 300) : 5)),
+                Duration.ofSeconds(Long.getLong(NEGATIVE_TTL_PROPERTY, 30)),
+                Boolean.getBoolean(CHANGE_STREAM_PROPERTY));
+    }
+
+    public CachingUserDao(long maxSize, Duration ttl, Duration credentialTtl, Duration negativeTtl,
+                          boolean watchChanges) {
+        this(DatabaseConfig.getDatabase().getCollection(COLLECTION_NAME, User.class),
+                maxSize, ttl, credentialTtl, negativeTtl, watchChanges);
+    }
+
+    CachingUserDao(MongoCollection<User> collection, long maxSize, Duration ttl, Duration credentialTtl,
+                   Duration negativeTtl, boolean watchChanges) {
+        super(collection);
+        this.profilesById = newCache(maxSize, ttl, negativeTtl);
+        Duration credentialNegativeTtl = negativeTtl.compareTo(credentialTtl) < 0 ? negativeTtl : credentialTtl;
+        this.credentialsByEmail = newCacheBuilder(maxSize, credentialTtl, credentialNegativeTtl)
+                // Runs atomically with the entry, so it cannot drop the mapping of a newer load
+                .<String, Optional<User>>evictionListener((email, cached, cause) -> {
+                    if (cached != null) {
+                        cached.ifPresent(user -> emailsById.remove(user.getId(), email));
+                    }
+                })
+                .build();
+
+        if (watchChanges) {
+            watcher = new Thread(this::watchChanges, "user-cache-change-stream");
+            watcher.setDaemon(true);
+            watcher.start();
+        } else {
+            watcher = null;
+        }
+    }
+
+    @Override
+    public Optional<User> findProfileById(String id) {
+        try {
+            return profilesById.get(id, this::loadProfileById);
+        } catch (RuntimeException e) {
+            log.error("Error finding user profile by id: {}", id, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Optional<User> findAuthByEmail(String email) {
+        try {
+            return credentialsByEmail.get(email, key -> {
+                Optional<User> user = loadAuthByEmail(key);
+                user.ifPresent(found -> emailsById.put(found.getId(), key));
+                return user;
+            });
+        } catch (RuntimeException e) {
+            log.error("Error finding user credentials by email: {}", email, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public User save(User user) {
+        User saved = super.save(user);
+        invalidate(saved.getId(), saved.getEmail());
+        return saved;
+    }
+
+    @Override
+    public User insertIfAbsent(User user) {
+        User saved = super.insertIfAbsent(user);
+        invalidate(saved.getId(), saved.getEmail());
+        return saved;
+    }
+
+    @Override
+    public BulkInsertResult insertBatch(List<User> users) {
+        BulkInsertResult result = super.insertBatch(users);
+        // New users can only be cached as negative email lookups
+        users.forEach(user -> credentialsByEmail.invalidate(user.getEmail()));
+        return result;
+    }
+
+    @Override
+    public boolean updatePasswordHash(String id, String passwordHash) {
+        boolean updated = super.updatePasswordHash(id, passwordHash);
+        invalidate(id, null);
+        return updated;
+    }
+
+    @Override
+    public boolean deleteById(String id) {
+        boolean deleted = super.deleteById(id);
+        invalidate(id, null);
+        return deleted;
+    }
+
+    public CacheStats getProfileStats() {
+        return profilesById.stats();
+    }
+
+    public CacheStats getCredentialStats() {
+        return credentialsByEmail.stats();
+    }
+
+    @Override
+    public void writePrometheus(Appendable out) throws IOException {
+        PrometheusText.writeType(out, "lab2_user_cache_requests_total", "counter");
+        writeRequests(out, "profile", getProfileStats());
+        writeRequests(out, "credentials", getCredentialStats());
+        PrometheusText.writeType(out, "lab2_user_cache_hit_ratio", "gauge");
+        PrometheusText.writeSample(out, "lab2_user_cache_hit_ratio", "cache=\"profile\"", getProfileStats().hitRate());
+        PrometheusText.writeSample(out, "lab2_user_cache_hit_ratio", "cache=\"credentials\"",
+                getCredentialStats().hitRate());
+        PrometheusText.writeType(out, "lab2_user_cache_evictions_total", "counter");
+        PrometheusText.writeSample(out, "lab2_user_cache_evictions_total", "cache=\"profile\"",
+                getProfileStats().evictionCount());
+        PrometheusText.writeSample(out, "lab2_user_cache_evictions_total", "cache=\"credentials\"",
+                getCredentialStats().evictionCount());
+        PrometheusText.writeType(out, "lab2_user_cache_size", "gauge");
+        PrometheusText.writeSample(out, "lab2_user_cache_size", "cache=\"profile\"", profilesById.estimatedSize());
+        PrometheusText.writeSample(out, "lab2_user_cache_size", "cache=\"credentials\"",
+                credentialsByEmail.estimatedSize());
+    }
+
+    public void invalidateAll() {
+        emailsById.clear();
+        profilesById.invalidateAll();
+        credentialsByEmail.invalidateAll();
+    }
+
+    /**
+     * Stops the change-stream listener, if one was started.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (watcher != null) {
+            watcher.interrupt();
+            // A blocked getMore does not notice the interrupt
+            MongoChangeStreamCursor<?> cursor = changeCursor;
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (RuntimeException e) {
+                    log.debug("Closing the user change stream failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every entry for the user. The email may have changed, so credentials are
+     * also looked up by id.
+     */
+    void invalidate(String id, String email) {
+        if (id != null) {
+            profilesById.invalidate(id);
+            String cachedEmail = emailsById.remove(id);
+            if (cachedEmail != null) {
+                credentialsByEmail.invalidate(cachedEmail);
+            }
+        }
+        if (email != null) {
+            credentialsByEmail.invalidate(email);
+        }
+    }
+
+    private static void writeRequests(Appendable out, String cache, CacheStats stats) throws IOException {
+        PrometheusText.writeSample(out, "lab2_user_cache_requests_total",
+                "cache=\"" + cache + "\",result=\"hit\"", stats.hitCount());
+        PrometheusText.writeSample(out, "lab2_user_cache_requests_total",
+                "cache=\"" + cache + "\",result=\"miss\"", stats.missCount());
+    }
+
+    private void watchChanges() {
+        BsonDocument resumeToken = null;
+        while (!closed && !Thread.currentThread().isInterrupted()) {
+            var stream = collection().watch();
+            if (resumeToken != null) {
+                stream = stream.resumeAfter(resumeToken);
+            }
+            try (MongoChangeStreamCursor<ChangeStreamDocument<User>> cursor = stream.cursor()) {
+                changeCursor = cursor;
+                if (closed) {
+                    return;
+                }
+                log.info("Watching {} for cache invalidation", collection().getNamespace());
+                while (cursor.hasNext()) {
+                    ChangeStreamDocument<User> change = cursor.next();
+                    resumeToken = change.getResumeToken();
+
+                    String id = change.getDocumentKey() == null ? null
+                            : change.getDocumentKey().getObjectId("_id").getValue().toHexString();
+                    String email = change.getFullDocument() == null ? null : change.getFullDocument().getEmail();
+                    invalidate(id, email);
+                    if (id == null) {
+                        invalidateAll();
+                    }
+                }
+            } catch (Exception e) {
+                if (closed) {
+                    return;
+                }
+                log.warn("User change stream failed, retrying in {} ms", CHANGE_STREAM_RETRY_MILLIS, e);
+                // A stale token (e.g. after the oplog rolled over) would fail forever
+                resumeToken = null;
+                invalidateAll();
+                try {
+                    Thread.sleep(CHANGE_STREAM_RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static Cache<String, Optional<User>> newCache(long maxSize, Duration ttl, Duration negativeTtl) {
+        return newCacheBuilder(maxSize, ttl, negativeTtl).build();
+    }
+
+    private static Caffeine<String, Optional<User>> newCacheBuilder(long maxSize, Duration ttl, Duration negativeTtl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new PositiveNegativeExpiry(ttl, negativeTtl))
+                .recordStats();
+    }
+
+    private static class PositiveNegativeExpiry implements Expiry<String, Optional<User>> {
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+
+        PositiveNegativeExpiry(Duration ttl, Duration negativeTtl) {
+            this.ttlNanos = ttl.toNanos();
+            this.negativeTtlNanos = negativeTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Optional<User> value, long currentTime) {
+            return value.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<User> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<User> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.dao;
+
+import lombok.Getter;
+
+/**
+ * Thrown when an insert would duplicate the email or username of an existing user.
+ */
+@Getter
+public class DuplicateUserException extends RuntimeException {
+    /** The duplicated field, {@code email} or {@code username}. */
+    private final String field;
+
+    public DuplicateUserException(String field) {
+        this(field, null);
+    }
+
+    public DuplicateUserException(String field, Throwable cause) {
+        super("User with this " + field + " already exists", cause);
+        this.field = field;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome of a {@link UserImporter} run. Only the first {@value #MAX_ERRORS} errors are
+ * kept in detail so a bad file cannot exhaust memory; the counters are always exact.
+ */
+public class ImportReport {
+    static final int MAX_ERRORS = 1_000;
+
+    private final LongAdder read = new LongAdder();
+    private final LongAdder inserted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicInteger batches = new AtomicInteger();
+    private final List<Error> errors = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @param line 1-based line in the source, or -1 when unknown
+     */
+    public record Error(int batch, long line, int code, String message) {
+    }
+
+    void recordRead() {
+        read.increment();
+    }
+
+    void recordInvalid(long line, String message) {
+        failed.increment();
+        addError(new Error(-1, line, -1, message));
+    }
+
+    void recordBatch(int batch, long[] lines, UserDao.BulkInsertResult result) {
+        batches.incrementAndGet();
+        inserted.add(result.insertedCount());
+        failed.add(result.failures().size());
+        for (UserDao.BulkInsertResult.Failure failure : result.failures()) {
+            addError(new Error(batch, lines[failure.index()], failure.code(), failure.message()));
+        }
+    }
+
+    void recordBatchFailure(int batch, long[] lines, Throwable cause) {
+        batches.incrementAndGet();
+        failed.add(lines.length);
+        addError(new Error(batch, lines.length == 0 ? -1 : lines[0], -1, String.valueOf(cause.getMessage())));
+    }
+
+    private void addError(Error error) {
+        synchronized (errors) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+
+    public long getRead() {
+        return read.sum();
+    }
+
+    public long getInserted() {
+        return inserted.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public int getBatches() {
+        return batches.get();
+    }
+
+    public List<Error> getErrors() {
+        synchronized (errors) {
+            return List.copyOf(errors);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ImportReport{" +
+                "read=" + getRead() +
+                ", inserted=" + getInserted() +
+                ", failed=" + getFailed() +
+                ", batches=" + getBatches() +
+                '}';
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.dao;
+
+import com.example.config.DatabaseConfig;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rotating refresh tokens. Each document is keyed by the token's SHA-256 digest and
+ * belongs to a family started at login; every refresh marks the presented token used and
+ * adds its successor to the family. Presenting an already used token means it was
+ * copied, so the whole family is deleted. Documents disappear through a TTL index once
+ * they expire, which keeps the collection at roughly one live document per session.
+ */
+@Slf4j
+public class RefreshTokenDao {
+    private static final String COLLECTION_NAME = "refresh_tokens";
+
+    private static final List<IndexModel> INDEXES = List.of(
+            new IndexModel(Indexes.ascending("expiresAt"),
+                    new IndexOptions().name("expires_ttl").expireAfter(0L, TimeUnit.SECONDS)),
+            new IndexModel(Indexes.ascending("familyId"), new IndexOptions().name("family")),
+            new IndexModel(Indexes.ascending("userId"), new IndexOptions().name("user")));
+    private static final AtomicBoolean INDEXES_STARTED = new AtomicBoolean();
+
+    private static final FindOneAndUpdateOptions RETURN_OWNER = new FindOneAndUpdateOptions()
+            .projection(Projections.include("userId", "familyId"));
+
+    public enum Outcome {
+        ROTATED,
+        // A used token was presented again; its family has been revoked
+        REUSED,
+        INVALID
+    }
+
+    public record Rotation(Outcome outcome, String userId) {
+    }
+
+    private final MongoCollection<Document> collection;
+
+    public RefreshTokenDao() {
+        this.collection = DatabaseConfig.getDatabase().getCollection(COLLECTION_NAME);
+
+        if (INDEXES_STARTED.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> collection.createIndexes(INDEXES))
+                    .whenComplete((ignored, e) -> {
+                        if (e != null) {
+                            log.error("Failed to create indexes on {}", collection.getNamespace(), e);
+                        }
+                    });
+        }
+    }
+
+    public void create(String tokenHash, String userId, String familyId, Instant expiresAt) {
+        collection.insertOne(new Document("_id", tokenHash)
+                .append("userId", userId)
+                .append("familyId", familyId)
+                .append("expiresAt", Date.from(expiresAt)));
+    }
+
+    /**
+     * Atomically marks {@code oldHash} used and stores {@code newHash} as its successor.
+     */
+    public Rotation rotate(String oldHash, String newHash, Instant now, Instant newExpiresAt) {
+        Document previous = collection.findOneAndUpdate(
+                Filters.and(
+                        Filters.eq("_id", oldHash),
+                        Filters.exists("usedAt", false),
+                        Filters.gt("expiresAt", Date.from(now))),
+                Updates.set("usedAt", Date.from(now)),
+                RETURN_OWNER);
+
+        if (previous == null) {
+            Document existing = collection.find(Filters.eq("_id", oldHash))
+                    .projection(Projections.include("userId", "familyId", "usedAt"))
+                    .first();
+            if (existing != null && existing.get("usedAt") != null) {
+                long deleted = collection.deleteMany(Filters.eq("familyId", existing.getString("familyId")))
+                        .getDeletedCount();
+                log.warn("Refresh token reuse for user {}, revoked {} tokens of the family",
+                        existing.getString("userId"), deleted);
+                return new Rotation(Outcome.REUSED, existing.getString("userId"));
+            }
+            return new Rotation(Outcome.INVALID, null);
+        }
+
+        String userId = previous.getString("userId");
+        create(newHash, userId, previous.getString("familyId"), newExpiresAt);
+        return new Rotation(Outcome.ROTATED, userId);
+    }
+
+    /**
+     * Deletes the family {@code tokenHash} belongs to, i.e. ends that session.
+     *
+     * @return whether the token was known
+     */
+    public boolean revokeFamily(String tokenHash) {
+        Document existing = collection.find(Filters.eq("_id", tokenHash))
+                .projection(Projections.include("familyId"))
+                .first();
+        if (existing == null) {
+            return false;
+        }
+        collection.deleteMany(Filters.eq("familyId", existing.getString("familyId")));
+        return true;
+    }
+
+    public long revokeAllForUser(String userId) {
+        return collection.deleteMany(Filters.eq("userId", userId)).getDeletedCount();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.dao;
+
+import com.example.config.DatabaseConfig;
+import com.example.util.TokenRevocationList;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shared log of access-token revocations, from which every node rebuilds its
+ * {@link TokenRevocationList}. Entries are only needed until the tokens they cover have
+ * expired, so a TTL index keeps the collection down to the last access-token lifetime.
+ */
+@Slf4j
+public class RevocationDao {
+    private static final String COLLECTION_NAME = "revocations";
+    private static final String TYPE_TOKEN = "token";
+    private static final String TYPE_USER = "user";
+
+    private static final List<IndexModel> INDEXES = List.of(
+            new IndexModel(Indexes.ascending("expiresAt"),
+                    new IndexOptions().name("expires_ttl").expireAfter(0L, TimeUnit.SECONDS)),
+            new IndexModel(Indexes.ascending("createdAt"), new IndexOptions().name("created")));
+    private static final AtomicBoolean INDEXES_STARTED = new AtomicBoolean();
+
+    private final MongoCollection<Document> collection;
+
+    public RevocationDao() {
+        this.collection = DatabaseConfig.getDatabase().getCollection(COLLECTION_NAME);
+
+        if (INDEXES_STARTED.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> collection.createIndexes(INDEXES))
+                    .whenComplete((ignored, e) -> {
+                        if (e != null) {
+                            log.error("Failed to create indexes on {}", collection.getNamespace(), e);
+                        }
+                    });
+        }
+    }
+
+    public void revokeToken(String tokenId, Instant expiresAt) {
+        insert(TYPE_TOKEN, tokenId, expiresAt, expiresAt);
+    }
+
+    /**
+     * Revokes every token of the user issued before {@code issuedBefore}; the entry is
+     * kept until {@code expiresAt}, when no such token can still be valid.
+     */
+    public void revokeUser(String userId, Instant issuedBefore, Instant expiresAt) {
+        insert(TYPE_USER, userId, issuedBefore, expiresAt);
+    }
+
+    /**
+     * Applies every revocation recorded at or after {@code since} to {@code revocations}.
+     *
+     * @return the number of entries applied
+     */
+    public int applySince(Instant since, TokenRevocationList revocations) {
+        int applied = 0;
+        for (Document entry : collection.find(Filters.gte("createdAt", Date.from(since)))
+                .projection(Projections.include("type", "key", "at", "expiresAt"))) {
+            Instant at = entry.getDate("at").toInstant();
+            if (TYPE_USER.equals(entry.getString("type"))) {
+                revocations.revokeUser(entry.getString("key"), at);
+            } else {
+                revocations.revokeToken(entry.getString("key"), at);
+            }
+            applied++;
+        }
+        return applied;
+    }
+
+    private void insert(String type, String key, Instant at, Instant expiresAt) {
+        collection.insertOne(new Document("type", type)
+                .append("key", key)
+                .append("at", Date.from(at))
+                .append("expiresAt", Date.from(expiresAt))
+                .append("createdAt", new Date()));
+    }
+}
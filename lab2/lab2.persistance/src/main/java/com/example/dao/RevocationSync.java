@@ -0,0 +1,65 @@
+package com.example.dao;
+
+import com.example.util.TokenRevocationList;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps this node's {@link TokenRevocationList} in step with the shared
+ * {@link RevocationDao} log by polling it on a background thread. Each poll re-reads a
+ * short overlap window, since entries written by other nodes may carry slightly skewed
+ * timestamps; applying an entry twice is harmless. The interval bounds how long a
+ * revocation made on another node takes to be enforced here.
+ */
+@Slf4j
+public class RevocationSync implements AutoCloseable {
+    public static final String INTERVAL_PROPERTY = "lab2.revocation.syncSeconds";
+
+    private static final Duration OVERLAP = Duration.ofSeconds(30);
+
+    private final RevocationDao dao;
+    private final TokenRevocationList revocations;
+    private final ScheduledExecutorService scheduler;
+    private volatile Instant lastPoll;
+
+    public RevocationSync(RevocationDao dao, TokenRevocationList revocations, Duration interval) {
+        this.dao = dao;
+        this.revocations = revocations;
+        // Everything that can still match a live token
+        this.lastPoll = Instant.now().minus(revocations.getAccessTtl());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "revocation-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Revocation sync started, interval {}s", interval.toSeconds());
+    }
+
+    public static RevocationSync fromSystemProperties(RevocationDao dao, TokenRevocationList revocations) {
+        return new RevocationSync(dao, revocations, Duration.ofSeconds(Long.getLong(INTERVAL_PROPERTY, 5)));
+    }
+
+    void poll() {
+        Instant started = Instant.now();
+        try {
+            int applied = dao.applySince(lastPoll.minus(OVERLAP), revocations);
+            lastPoll = started;
+            revocations.purgeExpired(started);
+            log.debug("Revocation sync applied {} entries, {} active", applied, revocations.size());
+        } catch (Exception e) {
+            // Keep lastPoll, so the next round covers this one as well
+            log.warn("Revocation sync failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -3,37 +3,62 @@ package com.example.dao;
 import com.example.config.DatabaseConfig;
 import com.example.model.User;
 import com.mongodb.Block;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
 import org.bson.types.ObjectId;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Slf4j
 public class UserDao {
-    private static final String COLLECTION_NAME = "users";
+    static final String COLLECTION_NAME = "users";
+    private static final int STREAM_BATCH_SIZE = 500;
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    private static final JsonWriterSettings EXPORT_JSON = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
 
-    private final MongoCollection<Document> collection;
+    // Public profile: everything except the password hash
+    static final Bson PROFILE_PROJECTION = Projections.exclude("passwordHash");
+    // Just what login needs to verify a password and issue a token
+    static final Bson AUTH_PROJECTION = Projections.include("_id", "username", "email", "passwordHash", "role");
+
+    private final MongoCollection<User> collection;
+    // Unique indexes known to exist; fields without one are checked before inserting
+    private final Set<String> constraintIndexes;
 
     public UserDao() {
-        MongoDatabase database = DatabaseConfig.getDatabase();
-        this.collection = database.getCollection(COLLECTION_NAME);
+        this(DatabaseConfig.getDatabase().getCollection(COLLECTION_NAME, User.class));
+    }
 
-        // Create unique index on username and email
-//        collection.createIndex(Filters.eq("username", 1));
-//        collection.createIndex(Filters.eq("email", 1));
+    UserDao(MongoCollection<User> collection) {
+        this.collection = collection;
+        this.constraintIndexes = UserIndexes.ensureIndexesOnce(collection);
     }
 
     public Optional<User> findByUsername(String username) {
         try {
-            Document doc = collection.find(Filters.eq("username", username)).first();
-            return Optional.ofNullable(documentToUser(doc));
+            return Optional.ofNullable(collection.find(byUsername(username)).first());
         } catch (Exception e) {
             log.error("Error finding user by username: {}", username, e);
             return Optional.empty();
@@ -42,8 +67,7 @@ public class UserDao {
 
     public Optional<User> findByEmail(String email) {
         try {
-            Document doc = collection.find(Filters.eq("email", email)).first();
-            return Optional.ofNullable(documentToUser(doc));
+            return Optional.ofNullable(collection.find(byEmail(email)).first());
         } catch (Exception e) {
             log.error("Error finding user by email: {}", email, e);
             return Optional.empty();
@@ -52,43 +76,102 @@ public class UserDao {
 
     public Optional<User> findById(String id) {
         try {
-            ObjectId objectId = new ObjectId(id);
-            Document doc = collection.find(Filters.eq("_id", objectId)).first();
-            return Optional.ofNullable(documentToUser(doc));
+            return Optional.ofNullable(collection.find(byId(id)).first());
         } catch (Exception e) {
             log.error("Error finding user by id: {}", id, e);
             return Optional.empty();
         }
     }
 
+    /**
+     * Profile view of a user, fetched without {@code passwordHash}.
+     */
+    public Optional<User> findProfileById(String id) {
+        try {
+            return loadProfileById(id);
+        } catch (Exception e) {
+            log.error("Error finding user profile by id: {}", id, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Auth view of a user: only id, username, email, password hash and role are populated.
+     */
+    public Optional<User> findAuthByEmail(String email) {
+        try {
+            return loadAuthByEmail(email);
+        } catch (Exception e) {
+            log.error("Error finding user credentials by email: {}", email, e);
+            return Optional.empty();
+        }
+    }
+
+    // The two finders above without the error handling, for callers that must tell a
+    // missing user from a failed read
+
+    Optional<User> loadProfileById(String id) {
+        return Optional.ofNullable(collection.find(byId(id)).projection(PROFILE_PROJECTION).first());
+    }
+
+    Optional<User> loadAuthByEmail(String email) {
+        return Optional.ofNullable(collection.find(byEmail(email)).projection(AUTH_PROJECTION).first());
+    }
+
     public List<User> findAll() {
         List<User> users = new ArrayList<>();
         try {
-            for (Document doc : collection.find()) {
-                User user = documentToUser(doc);
-                if (user != null) {
-                    users.add(user);
-                }
-            }
+            collection.find().into(users);
         } catch (Exception e) {
             log.error("Error finding all users", e);
         }
         return users;
     }
 
-    public User save(User user) {
+    /**
+     * Keyset pagination over {@code _id}: returns up to {@code limit} users whose id is
+     * greater than {@code afterId} (or from the start when it is null), in id order.
+     * Users are returned as profile views, without {@code passwordHash}.
+     *
+     * @throws IllegalArgumentException if {@code afterId} is not a valid ObjectId
+     */
+    public List<User> findProfilePage(String afterId, int limit) {
+        Bson filter = afterId(afterId);
+        List<User> users = new ArrayList<>(limit);
         try {
-            Document doc = userToDocument(user);
+            collection.find(filter).projection(PROFILE_PROJECTION).sort(Sorts.ascending("_id")).limit(limit).into(users);
+        } catch (Exception e) {
+            log.error("Error finding users after id: {}", afterId, e);
+        }
+        return users;
+    }
 
+    /**
+     * Streams every user's profile view through {@code action} straight from the cursor, so memory use
+     * does not depend on the collection size. Failures are rethrown because the caller
+     * may already have written part of its output.
+     */
+    public void forEachProfile(Consumer<User> action) {
+        try (MongoCursor<User> cursor = collection.find().projection(PROFILE_PROJECTION).batchSize(STREAM_BATCH_SIZE).iterator()) {
+            while (cursor.hasNext()) {
+                action.accept(cursor.next());
+            }
+        } catch (Exception e) {
+            log.error("Error streaming users", e);
+            throw new RuntimeException("Failed to stream users", e);
+        }
+    }
+
+    public User save(User user) {
+        try {
             if (user.getId() != null) {
-                // Update existing user
-                ObjectId objectId = new ObjectId(user.getId());
-                collection.replaceOne(Filters.eq("_id", objectId), doc);
+                // Update existing user; the profile ETag follows updatedAt, so every write moves it
+                user.setUpdatedAt(LocalDateTime.now());
+                collection.replaceOne(byId(user.getId()), user);
                 log.info("Updated user: {}", user.getUsername());
             } else {
-                // Insert new user
-                collection.insertOne(doc);
-                user.setId(doc.getObjectId("_id").toString());
+                // Insert new user; UserCodec assigns the id
+                collection.insertOne(user);
                 log.info("Created new user: {}", user.getUsername());
             }
 
@@ -99,10 +182,114 @@ public class UserDao {
         }
     }
 
+    /**
+     * Inserts a new user in a single round trip, relying on the unique email and username
+     * indexes instead of a separate existence check, so concurrent sign-ups with the same
+     * email cannot both succeed. For a field whose unique index could not be built the
+     * existence check is kept, and only that race remains.
+     *
+     * @throws DuplicateUserException if the email or username is already taken
+     */
+    public User insertIfAbsent(User user) {
+        if (!constraintIndexes.contains(UserIndexes.EMAIL_UNIQUE) && existsByEmail(user.getEmail())) {
+            throw new DuplicateUserException("email");
+        }
+        if (!constraintIndexes.contains(UserIndexes.USERNAME_UNIQUE) && user.getUsername() != null
+                && existsByUsername(user.getUsername())) {
+            throw new DuplicateUserException("username");
+        }
+        try {
+            collection.insertOne(user);
+            log.info("Created new user: {}", user.getUsername());
+            return user;
+        } catch (MongoWriteException e) {
+            user.setId(null);
+            if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+                String message = e.getError().getMessage();
+                String field = message.contains(UserIndexes.USERNAME_UNIQUE) ? "username" : "email";
+                throw new DuplicateUserException(field, e);
+            }
+            log.error("Error inserting user: {}", user.getUsername(), e);
+            throw new RuntimeException("Failed to save user", e);
+        } catch (Exception e) {
+            user.setId(null);
+            log.error("Error inserting user: {}", user.getUsername(), e);
+            throw new RuntimeException("Failed to save user", e);
+        }
+    }
+
+    /**
+     * Inserts a batch with one unordered {@code bulkWrite}: a failing document (e.g. a
+     * duplicate email) does not stop the rest of the batch. Failures are reported per
+     * document rather than logged.
+     */
+    public BulkInsertResult insertBatch(List<User> users) {
+        List<InsertOneModel<User>> models = new ArrayList<>(users.size());
+        for (User user : users) {
+            models.add(new InsertOneModel<>(user));
+        }
+
+        try {
+            BulkWriteResult result = collection.bulkWrite(models, UNORDERED);
+            return new BulkInsertResult(result.getInsertedCount(), List.of());
+        } catch (MongoBulkWriteException e) {
+            List<BulkInsertResult.Failure> failures = new ArrayList<>(e.getWriteErrors().size());
+            for (BulkWriteError error : e.getWriteErrors()) {
+                failures.add(new BulkInsertResult.Failure(error.getIndex(), error.getCode(), error.getMessage()));
+            }
+            return new BulkInsertResult(e.getWriteResult().getInsertedCount(), failures);
+        } catch (Exception e) {
+            log.error("Error inserting batch of {} users", users.size(), e);
+            throw new RuntimeException("Failed to insert users", e);
+        }
+    }
+
+    /**
+     * Writes every user as one line of relaxed extended JSON, straight from the raw BSON
+     * cursor without decoding into {@link User}.
+     *
+     * @return the number of users written
+     */
+    public long exportNdjson(Writer out, boolean includePasswordHash) throws IOException {
+        Bson projection = includePasswordHash ? new Document() : PROFILE_PROJECTION;
+        long count = 0;
+        try (MongoCursor<RawBsonDocument> cursor = collection.withDocumentClass(RawBsonDocument.class)
+                .find().projection(projection).batchSize(STREAM_BATCH_SIZE).iterator()) {
+            while (cursor.hasNext()) {
+                out.write(cursor.next().toJson(EXPORT_JSON));
+                out.write('\n');
+                count++;
+            }
+        }
+        out.flush();
+        return count;
+    }
+
+    public record BulkInsertResult(int insertedCount, List<Failure> failures) {
+        /** @param index position of the document in the submitted batch */
+        public record Failure(int index, int code, String message) {
+        }
+    }
+
+    /**
+     * Replaces only the password hash, leaving the rest of the document untouched, so it
+     * is safe to call with a partially loaded user such as the auth view.
+     */
+    public boolean updatePasswordHash(String id, String passwordHash) {
+        try {
+            long matched = collection.updateOne(byId(id), Updates.combine(
+                    Updates.set("passwordHash", passwordHash),
+                    Updates.set("updatedAt", new Date()))).getMatchedCount();
+            return matched > 0;
+        } catch (Exception e) {
+            log.error("Error updating password hash for user id: {}", id, e);
+            return false;
+        }
+    }
+
     public boolean deleteById(String id) {
         try {
-            ObjectId objectId = new ObjectId(id);
-            long deletedCount = collection.deleteOne(Filters.eq("_id", objectId)).getDeletedCount();
+            long deletedCount = collection.deleteOne(byId(id)).getDeletedCount();
             log.info("Deleted user with id: {}", id);
             return deletedCount > 0;
         } catch (Exception e) {
@@ -113,7 +300,7 @@ public class UserDao {
 
     public boolean existsByUsername(String username) {
         try {
-            return collection.countDocuments(Filters.eq("username", username)) > 0;
+            return collection.countDocuments(byUsername(username)) > 0;
         } catch (Exception e) {
             log.error("Error checking if username exists: {}", username, e);
             return false;
@@ -122,64 +309,32 @@ public class UserDao {
 
     public boolean existsByEmail(String email) {
         try {
-            return collection.countDocuments(Filters.eq("email", email)) > 0;
+            return collection.countDocuments(byEmail(email)) > 0;
         } catch (Exception e) {
             log.error("Error checking if email exists: {}", email, e);
             return false;
         }
     }
 
-    private Document userToDocument(User user) {
-        Document doc = new Document()
-                .append("username", user.getUsername())
-                .append("email", user.getEmail())
-                .append("passwordHash", user.getPasswordHash())
-                .append("role", user.getRole().toString())
-                .append("createdAt", Date.from(user.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant()))
-                .append("updatedAt", Date.from(user.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant()));
-
-        if (user.getId() != null) {
-            doc.append("_id", new ObjectId(user.getId()));
-        }
-
-        return doc;
+    MongoCollection<User> collection() {
+        return collection;
     }
 
-    private User documentToUser(Document doc) {
-        if (doc == null) {
-            return null;
-        }
-
-        User user = new User();
-        user.setId(doc.getObjectId("_id").toString());
-        user.setUsername(doc.getString("username"));
-        user.setEmail(doc.getString("email"));
-        user.setPasswordHash(doc.getString("passwordHash"));
+    // Filters used by the finders; UserIndexes keeps every one of them index-backed
 
-        // Handle null role gracefully with default
-        String roleStr = doc.getString("role");
-        if (roleStr != null && !roleStr.trim().isEmpty()) {
-            try {
-                user.setRole(User.Role.valueOf(roleStr));
-            } catch (IllegalArgumentException e) {
-                log.warn("Invalid role '{}' for user '{}', defaulting to USER", roleStr, user.getUsername());
-                user.setRole(User.Role.USER);
-            }
-        } else {
-            log.warn("Missing or null role for user '{}', defaulting to USER", user.getUsername());
-            user.setRole(User.Role.USER);
-        }
+    static Bson byId(String id) {
+        return Filters.eq("_id", new ObjectId(id));
+    }
 
-        Date createdAt = doc.getDate("createdAt");
-        Date updatedAt = doc.getDate("updatedAt");
+    static Bson byEmail(String email) {
+        return Filters.eq("email", email);
+    }
 
-        if (createdAt != null) {
-            user.setCreatedAt(LocalDateTime.ofInstant(createdAt.toInstant(), ZoneId.systemDefault()));
-        }
-        if (updatedAt != null) {
-            user.setUpdatedAt(LocalDateTime.ofInstant(updatedAt.toInstant(), ZoneId.systemDefault()));
-        }
+    static Bson byUsername(String username) {
+        return Filters.eq("username", username);
+    }
 
-        return user;
+    static Bson afterId(String afterId) {
+        return afterId == null ? new Document() : Filters.gt("_id", new ObjectId(afterId));
     }
 }
\ No newline at end of file
@@ -0,0 +1,217 @@
+package com.example.dao;
+
+import com.example.model.User;
+import com.example.util.PasswordUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams users from NDJSON or CSV into MongoDB. The source is read line by line into
+ * batches; each batch hashes its passwords and is written with one unordered
+ * {@code bulkWrite} on a worker pool, so hashing runs in parallel across batches. At
+ * most {@code maxInFlightBatches} batches are queued or running at once, which
+ * bounds memory for arbitrarily large files.
+ * <p>
+ * NDJSON lines are JSON objects ({@link #toUser} lists the fields); the output of
+ * {@link UserDao#exportNdjson} can be imported as-is. CSV needs a header row with
+ * {@code email} and {@code password} or {@code passwordHash} columns, optionally
+ * {@code username} and {@code role}; quoted fields are not supported. {@link UserTransfer}
+ * runs an import from the command line.
+ */
+@Slf4j
+public class UserImporter implements AutoCloseable {
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format fromFileName(String fileName) {
+            return fileName.toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : NDJSON;
+        }
+    }
+
+    private final UserDao userDao;
+    private final int batchSize;
+    private final int maxInFlightBatches;
+    private final ExecutorService workers;
+
+    public UserImporter(UserDao userDao, int batchSize) {
+        this(userDao, batchSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    public UserImporter(UserDao userDao, int batchSize, int parallelism) {
+        if (batchSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("batchSize and parallelism must be positive");
+        }
+        this.userDao = userDao;
+        this.batchSize = batchSize;
+        this.maxInFlightBatches = parallelism * 2;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "user-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public ImportReport importUsers(Reader source, Format format) throws IOException, InterruptedException {
+        ImportReport report = new ImportReport();
+        Semaphore inFlight = new Semaphore(maxInFlightBatches);
+        AtomicInteger batchNumber = new AtomicInteger();
+
+        try (BufferedReader reader = new BufferedReader(source)) {
+            String[] header = format == Format.CSV ? splitCsv(reader.readLine()) : null;
+            long lineNumber = header == null ? 0 : 1;
+
+            List<Document> batch = new ArrayList<>(batchSize);
+            List<Long> lines = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                report.recordRead();
+                try {
+                    batch.add(format == Format.CSV ? csvToDocument(header, line) : Document.parse(line));
+                    lines.add(lineNumber);
+                } catch (RuntimeException e) {
+                    report.recordInvalid(lineNumber, "Unparseable line: " + e.getMessage());
+                    continue;
+                }
+
+                if (batch.size() == batchSize) {
+                    submit(batchNumber.incrementAndGet(), batch, lines, report, inFlight);
+                    batch = new ArrayList<>(batchSize);
+                    lines = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                submit(batchNumber.incrementAndGet(), batch, lines, report, inFlight);
+            }
+        }
+
+        // Wait for the last batches to drain
+        inFlight.acquire(maxInFlightBatches);
+        inFlight.release(maxInFlightBatches);
+        log.info("User import finished: {}", report);
+        return report;
+    }
+
+    private void submit(int batch, List<Document> documents, List<Long> lineNumbers,
+                        ImportReport report, Semaphore inFlight) throws InterruptedException {
+        // Back-pressure: the reader blocks here while enough batches are pending
+        inFlight.acquire();
+        workers.execute(() -> {
+            try {
+                List<User> users = new ArrayList<>(documents.size());
+                List<Long> userLines = new ArrayList<>(documents.size());
+                for (int i = 0; i < documents.size(); i++) {
+                    try {
+                        users.add(toUser(documents.get(i)));
+                        userLines.add(lineNumbers.get(i));
+                    } catch (RuntimeException e) {
+                        report.recordInvalid(lineNumbers.get(i), e.getMessage());
+                    }
+                }
+
+                long[] lines = userLines.stream().mapToLong(Long::longValue).toArray();
+                try {
+                    UserDao.BulkInsertResult result = users.isEmpty()
+                            ? new UserDao.BulkInsertResult(0, List.of())
+                            : userDao.insertBatch(users);
+                    report.recordBatch(batch, lines, result);
+                    log.debug("Imported batch {}: {} inserted, {} failed", batch,
+                            result.insertedCount(), result.failures().size());
+                } catch (RuntimeException e) {
+                    report.recordBatchFailure(batch, lines, e);
+                    log.warn("Batch {} failed", batch, e);
+                }
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Fields: {@code email} (required), {@code username} (defaults to email),
+     * {@code password} (hashed here) or an existing BCrypt {@code passwordHash},
+     * {@code role}, and optionally {@code _id} and {@code createdAt} from an export.
+     */
+    static User toUser(Document doc) {
+        String email = doc.getString("email");
+        if (email == null || email.isBlank()) {
+            throw new IllegalArgumentException("email is required");
+        }
+
+        String passwordHash = doc.getString("passwordHash");
+        if (passwordHash == null) {
+            String password = doc.getString("password");
+            if (password == null || password.length() < 6) {
+                throw new IllegalArgumentException("password must be at least 6 characters for " + email);
+            }
+            passwordHash = PasswordUtil.hashPassword(password);
+        } else if (!PasswordUtil.isBcryptHash(passwordHash)) {
+            // Stored as-is otherwise, and would never match a password at login
+            throw new IllegalArgumentException("passwordHash is not a BCrypt hash for " + email);
+        }
+
+        String username = doc.getString("username");
+        User user = new User(username == null || username.isBlank() ? email : username, email, passwordHash);
+
+        String role = doc.getString("role");
+        if (role != null && !role.isBlank()) {
+            user.setRole(User.Role.valueOf(role.trim().toUpperCase(Locale.ROOT)));
+        }
+        if (doc.get("_id") instanceof ObjectId id) {
+            user.setId(id.toHexString());
+        }
+        if (doc.get("createdAt") instanceof Date createdAt) {
+            user.setCreatedAt(LocalDateTime.ofInstant(createdAt.toInstant(), ZoneId.systemDefault()));
+        }
+        return user;
+    }
+
+    static Document csvToDocument(String[] header, String line) {
+        String[] values = splitCsv(line);
+        if (values.length > header.length) {
+            throw new IllegalArgumentException("expected " + header.length + " columns, got " + values.length);
+        }
+        Document doc = new Document();
+        for (int i = 0; i < values.length; i++) {
+            if (!values[i].isEmpty()) {
+                doc.append(header[i], values[i]);
+            }
+        }
+        return doc;
+    }
+
+    private static String[] splitCsv(String line) {
+        if (line == null) {
+            throw new IllegalArgumentException("CSV source has no header row");
+        }
+        String[] values = line.split(",", -1);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values[i].trim();
+        }
+        return values;
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+}
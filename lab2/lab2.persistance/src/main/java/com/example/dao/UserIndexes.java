@@ -0,0 +1,101 @@
+package com.example.dao;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index definitions for the {@code users} collection. {@code createIndexes} is a no-op
+ * for indexes that already exist with the same spec, so this is safe to run on every
+ * startup. The unique indexes are built before the DAO is handed out, since registration
+ * depends on them; the covering index is only a speed-up and is built in the background.
+ */
+@Slf4j
+public class UserIndexes {
+    public static final String EMAIL_UNIQUE = "email_unique";
+    public static final String USERNAME_UNIQUE = "username_unique";
+    public static final String EMAIL_AUTH = "email_auth";
+
+    // Constraints: registration relies on these to reject duplicates
+    static final List<IndexModel> CONSTRAINT_INDEXES = List.of(
+            new IndexModel(Indexes.ascending("email"),
+                    new IndexOptions().name(EMAIL_UNIQUE).unique(true).background(true)),
+            new IndexModel(Indexes.ascending("username"),
+                    new IndexOptions().name(USERNAME_UNIQUE).unique(true).background(true)));
+
+    /**
+     * Covers {@link UserDao#findAuthByEmail}, so login is answered from the index alone.
+     * The price is a copy of every {@code passwordHash} in the index: it costs index
+     * memory, and the hashes end up wherever index files and backups go. Built on its own
+     * so that legacy data failing a unique constraint does not take it down as well.
+     */
+    static final IndexModel EMAIL_AUTH_INDEX = new IndexModel(
+            Indexes.ascending("email", "_id", "username", "passwordHash", "role"),
+            new IndexOptions().name(EMAIL_AUTH).background(true));
+
+    // Unique indexes confirmed by the first ensureIndexesOnce for each collection
+    private static final Map<MongoNamespace, Set<String>> constraintIndexes = new ConcurrentHashMap<>();
+
+    private UserIndexes() {
+    }
+
+    /**
+     * Builds each unique index on its own, synchronously, so a failure of one (legacy
+     * duplicates, or {@code "null"} usernames stored by older registrations) does not
+     * prevent the other.
+     *
+     * @return names of the unique indexes that exist
+     */
+    public static Set<String> ensureConstraintIndexes(MongoCollection<?> collection) {
+        Set<String> built = new HashSet<>();
+        for (IndexModel index : CONSTRAINT_INDEXES) {
+            String name = index.getOptions().getName();
+            try {
+                built.add(collection.createIndex(index.getKeys(), index.getOptions()));
+            } catch (MongoException e) {
+                log.error("Could not build {} on {}; duplicates are checked before each insert instead. "
+                        + "Remove the duplicate values and restart to enforce it", name, collection.getNamespace(), e);
+            }
+        }
+        log.info("Ensured unique indexes on {}: {}", collection.getNamespace(), built);
+        return Set.copyOf(built);
+    }
+
+    /**
+     * Builds the unique indexes on the first call for a collection and starts the covering
+     * index build.
+     *
+     * @return names of the unique indexes confirmed by the first call
+     */
+    static Set<String> ensureIndexesOnce(MongoCollection<?> collection) {
+        MongoNamespace namespace = collection.getNamespace();
+        Set<String> confirmed = constraintIndexes.get(namespace);
+        if (confirmed == null) {
+            synchronized (UserIndexes.class) {
+                confirmed = constraintIndexes.get(namespace);
+                if (confirmed == null) {
+                    confirmed = ensureConstraintIndexes(collection);
+                    constraintIndexes.put(namespace, confirmed);
+                    CompletableFuture.runAsync(() -> collection.createIndexes(List.of(EMAIL_AUTH_INDEX)))
+                            .whenComplete((ignored, e) -> {
+                                if (e != null) {
+                                    log.error("Failed to create {} on {}", EMAIL_AUTH, collection.getNamespace(), e);
+                                }
+                            });
+                }
+            }
+        }
+        return confirmed;
+    }
+}
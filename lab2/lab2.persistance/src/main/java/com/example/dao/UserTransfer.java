@@ -0,0 +1,79 @@
+package com.example.dao;
+
+import com.example.config.DatabaseConfig;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Command-line entry point for {@link UserImporter} and {@link UserDao#exportNdjson}:
+ * <pre>
+ *   UserTransfer import &lt;file|-&gt; [batchSize=1000] [parallelism=cores]
+ *   UserTransfer export &lt;file|-&gt; [--with-password-hashes]
+ * </pre>
+ * {@code -} reads standard input or writes standard output. Import takes NDJSON, or CSV
+ * for a {@code .csv} file name; an export with password hashes can be imported as-is.
+ * The database is the one configured for the app ({@code mongo.properties}, overridable
+ * with system properties). Exits with status 1 if any user failed to import.
+ */
+public class UserTransfer {
+    private static final int DEFAULT_BATCH_SIZE = 1_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2 || !("import".equals(args[0]) || "export".equals(args[0]))) {
+            System.err.println("Usage: UserTransfer import <file|-> [batchSize] [parallelism]");
+            System.err.println("       UserTransfer export <file|-> [--with-password-hashes]");
+            System.exit(2);
+        }
+
+        int status;
+        try {
+            status = "import".equals(args[0]) ? importUsers(args) : exportUsers(args);
+        } finally {
+            DatabaseConfig.close();
+        }
+        System.exit(status);
+    }
+
+    private static int importUsers(String[] args) throws IOException, InterruptedException {
+        String file = args[1];
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BATCH_SIZE;
+        int parallelism = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        Reader source = "-".equals(file)
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8);
+        ImportReport report;
+        try (UserImporter importer = new UserImporter(new UserDao(), batchSize, parallelism)) {
+            report = importer.importUsers(source, UserImporter.Format.fromFileName(file));
+        }
+
+        System.err.println(report);
+        for (ImportReport.Error error : report.getErrors()) {
+            System.err.printf("line %d (batch %d, code %d): %s%n", error.line(), error.batch(), error.code(), error.message());
+        }
+        return report.getFailed() == 0 ? 0 : 1;
+    }
+
+    private static int exportUsers(String[] args) throws IOException {
+        String file = args[1];
+        boolean includePasswordHash = args.length > 2 && "--with-password-hashes".equals(args[2]);
+
+        Writer out = "-".equals(file)
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Path.of(file), StandardCharsets.UTF_8);
+        long count;
+        try (out) {
+            count = new UserDao().exportNdjson(out, includePasswordHash);
+        }
+        System.err.printf("Exported %d users%n", count);
+        return 0;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.bench;
+
+import com.example.codec.UserCodec;
+import com.example.model.User;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes the same BSON user the way UserDao used to (Document, then field-by-field
+ * mapping) and with {@link UserCodec}. Run {@link #main}; {@code gc.alloc.rate.norm}
+ * is bytes allocated per decoded user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserDecodeBenchmark {
+    private RawBsonDocument bson;
+    private DocumentCodec documentCodec;
+    private UserCodec userCodec;
+
+    @Setup
+    public void setUp() {
+        userCodec = new UserCodec();
+        documentCodec = new DocumentCodec();
+
+        User user = new User("bench", "bench@example.com", "$2a$10$abcdefghijklmnopqrstuuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0");
+        user.setId(new ObjectId().toHexString());
+
+        BsonDocument document = new BsonDocument();
+        userCodec.encode(new BsonDocumentWriter(document), user, EncoderContext.builder().build());
+        bson = new RawBsonDocument(document, new BsonDocumentCodec());
+    }
+
+    @Benchmark
+    public User documentMapping() {
+        return documentToUser(bson.decode(documentCodec));
+    }
+
+    @Benchmark
+    public User userCodec() {
+        return bson.decode(userCodec);
+    }
+
+    // The mapping UserDao used before UserCodec
+    private static User documentToUser(Document doc) {
+        User user = new User();
+        user.setId(doc.getObjectId("_id").toString());
+        user.setUsername(doc.getString("username"));
+        user.setEmail(doc.getString("email"));
+        user.setPasswordHash(doc.getString("passwordHash"));
+
+        String roleStr = doc.getString("role");
+        if (roleStr != null && !roleStr.trim().isEmpty()) {
+            try {
+                user.setRole(User.Role.valueOf(roleStr));
+            } catch (IllegalArgumentException e) {
+                user.setRole(User.Role.USER);
+            }
+        } else {
+            user.setRole(User.Role.USER);
+        }
+
+        Date createdAt = doc.getDate("createdAt");
+        Date updatedAt = doc.getDate("updatedAt");
+        if (createdAt != null) {
+            user.setCreatedAt(LocalDateTime.ofInstant(createdAt.toInstant(), ZoneId.systemDefault()));
+        }
+        if (updatedAt != null) {
+            user.setUpdatedAt(LocalDateTime.ofInstant(updatedAt.toInstant(), ZoneId.systemDefault()));
+        }
+        return user;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(UserDecodeBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
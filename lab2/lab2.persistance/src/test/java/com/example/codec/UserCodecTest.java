@@ -0,0 +1,72 @@
+package com.example.codec;
+
+import com.example.model.User;
+import junit.framework.TestCase;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+
+public class UserCodecTest extends TestCase {
+    private final UserCodec codec = new UserCodec();
+
+    public void testRoundTrip() {
+        User user = new User("alice", "alice@example.com", "$2a$10$hash", User.Role.ADMIN);
+        user.setId(new ObjectId().toHexString());
+        user.setCreatedAt(LocalDateTime.now().minusDays(1).truncatedTo(ChronoUnit.MILLIS));
+        user.setUpdatedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+
+        User decoded = decode(encode(user));
+
+        assertEquals(user, decoded);
+        assertEquals(user.getPasswordHash(), decoded.getPasswordHash());
+        assertEquals(User.Role.ADMIN, decoded.getRole());
+        assertEquals(user.getCreatedAt(), decoded.getCreatedAt());
+        assertEquals(user.getUpdatedAt(), decoded.getUpdatedAt());
+    }
+
+    public void testReadsDocumentsWrittenByTheOldMapping() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 1, 12, 30);
+        Document legacy = new Document("_id", new ObjectId())
+                .append("username", "bob")
+                .append("email", "bob@example.com")
+                .append("passwordHash", "hash")
+                .append("role", "NOT_A_ROLE")
+                .append("createdAt", Date.from(createdAt.atZone(ZoneId.systemDefault()).toInstant()))
+                .append("extra", 42);
+
+        User decoded = decode(legacy.toBsonDocument());
+
+        assertEquals("bob", decoded.getUsername());
+        assertEquals(User.Role.USER, decoded.getRole());
+        assertEquals(createdAt, decoded.getCreatedAt());
+    }
+
+    public void testGeneratesIdOnInsert() {
+        User user = new User("carol", "carol@example.com", "hash");
+        assertFalse(codec.documentHasId(user));
+
+        codec.generateIdIfAbsentFromDocument(user);
+
+        assertTrue(ObjectId.isValid(user.getId()));
+        assertEquals(new ObjectId(user.getId()), codec.getDocumentId(user).asObjectId().getValue());
+    }
+
+    private BsonDocument encode(User user) {
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), user, EncoderContext.builder().build());
+        return document;
+    }
+
+    private User decode(BsonDocument document) {
+        return codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+}
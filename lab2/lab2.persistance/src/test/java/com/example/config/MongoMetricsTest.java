@@ -0,0 +1,42 @@
+package com.example.config;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ConnectionId;
+import com.mongodb.connection.ConnectionPoolSettings;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolCreatedEvent;
+import junit.framework.TestCase;
+import org.bson.BsonDocument;
+
+import java.util.concurrent.TimeUnit;
+
+public class MongoMetricsTest extends TestCase {
+    private static final ServerId SERVER = new ServerId(new ClusterId(), new ServerAddress());
+    private static final ConnectionId CONNECTION = new ConnectionId(SERVER);
+
+    public void testPrometheusOutputCoversPoolAndCommands() throws Exception {
+        MongoMetrics metrics = new MongoMetrics();
+        metrics.connectionPoolCreated(new ConnectionPoolCreatedEvent(SERVER,
+                ConnectionPoolSettings.builder().maxSize(40).build()));
+        metrics.connectionCreated(new ConnectionCreatedEvent(CONNECTION));
+        metrics.connectionCheckedOut(new ConnectionCheckedOutEvent(CONNECTION, 1, TimeUnit.MILLISECONDS.toNanos(3)));
+        metrics.commandSucceeded(new CommandSucceededEvent(null, 1, 1, new ConnectionDescription(SERVER), "users",
+                "find", new BsonDocument(), TimeUnit.MILLISECONDS.toNanos(2)));
+
+        StringBuilder out = new StringBuilder();
+        metrics.writePrometheus(out);
+        String text = out.toString();
+
+        assertTrue(text.contains("lab2_mongo_pool_connections{state=\"max\"} 40\n"));
+        assertTrue(text.contains("lab2_mongo_pool_connections{state=\"open\"} 1\n"));
+        assertTrue(text.contains("lab2_mongo_pool_connections{state=\"in_use\"} 1\n"));
+        assertTrue(text.contains("lab2_mongo_pool_checkout_micros_count 1\n"));
+        assertTrue(text.contains("lab2_mongo_command_micros_count{command=\"find\"} 1\n"));
+        assertFalse(text.contains("lab2_mongo_command_failures_total{"));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.dao;
+
+import com.example.codec.UserCodec;
+import com.example.model.User;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import junit.framework.TestCase;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.types.ObjectId;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+
+public class CachingUserDaoTest extends TestCase {
+    private MongoServer server;
+    private MongoClient client;
+    private MongoCollection<User> users;
+
+    @Override
+    protected void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        InetSocketAddress address = server.bind();
+        client = MongoClients.create(MongoClientSettings.builder()
+                .applyToClusterSettings(cluster -> cluster.hosts(
+                        List.of(new ServerAddress(address.getHostString(), address.getPort()))))
+                .codecRegistry(CodecRegistries.fromRegistries(
+                        CodecRegistries.fromCodecs(new UserCodec()),
+                        MongoClientSettings.getDefaultCodecRegistry()))
+                .build());
+        users = client.getDatabase("lab2_caching_user_dao_test").getCollection("users", User.class);
+    }
+
+    @Override
+    protected void tearDown() {
+        client.close();
+        server.shutdownNow();
+    }
+
+    public void testCredentialsExpireBeforeProfiles() throws Exception {
+        try (CachingUserDao dao = new CachingUserDao(users, 100, Duration.ofMinutes(5), Duration.ofMillis(200),
+                Duration.ofSeconds(30), false)) {
+            User ada = dao.insertIfAbsent(new User("ada", "ada@example.com", "old"));
+            assertEquals("old", dao.findAuthByEmail("ada@example.com").orElseThrow().getPasswordHash());
+            assertEquals("ada", dao.findProfileById(ada.getId()).orElseThrow().getUsername());
+
+            // Another node's writes, which this instance cannot invalidate
+            users.updateOne(Filters.eq("_id", new ObjectId(ada.getId())),
+                    Updates.combine(Updates.set("passwordHash", "new"), Updates.set("username", "lovelace")));
+            Thread.sleep(400);
+
+            assertEquals("new", dao.findAuthByEmail("ada@example.com").orElseThrow().getPasswordHash());
+            assertEquals("ada", dao.findProfileById(ada.getId()).orElseThrow().getUsername());
+        }
+    }
+
+    public void testScrapeReportsHitsAndMissesPerCache() throws Exception {
+        try (CachingUserDao dao = new CachingUserDao(users, 100, Duration.ofMinutes(5), Duration.ofMinutes(5),
+                Duration.ofSeconds(30), false)) {
+            dao.insertIfAbsent(new User("ada", "ada@example.com", "hash"));
+            dao.findAuthByEmail("ada@example.com");
+            dao.findAuthByEmail("ada@example.com");
+            dao.findAuthByEmail("nobody@example.com");
+
+            StringBuilder out = new StringBuilder();
+            dao.writePrometheus(out);
+            String text = out.toString();
+
+            assertTrue(text.contains("lab2_user_cache_requests_total{cache=\"credentials\",result=\"hit\"} 1\n"));
+            assertTrue(text.contains("lab2_user_cache_requests_total{cache=\"credentials\",result=\"miss\"} 2\n"));
+            assertTrue(text.contains("lab2_user_cache_requests_total{cache=\"profile\",result=\"miss\"} 0\n"));
+            assertTrue(text.contains("lab2_user_cache_size{cache=\"credentials\"} 2\n"));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.dao;
+
+import com.example.model.User;
+import com.example.util.PasswordUtil;
+import junit.framework.TestCase;
+import org.bson.Document;
+
+public class UserImporterTest extends TestCase {
+
+    public void testCsvLineWithHashedPassword() {
+        String[] header = {"username", "email", "password", "role"};
+        Document doc = UserImporter.csvToDocument(header, "alice, alice@example.com ,secret1,admin");
+
+        User user = UserImporter.toUser(doc);
+
+        assertEquals("alice", user.getUsername());
+        assertEquals("alice@example.com", user.getEmail());
+        assertEquals(User.Role.ADMIN, user.getRole());
+        assertTrue(PasswordUtil.verifyPassword("secret1", user.getPasswordHash()));
+    }
+
+    public void testExportedLineKeepsIdAndHash() {
+        String hash = PasswordUtil.hashPassword("secret1");
+        Document doc = Document.parse("{\"_id\": {\"$oid\": \"65f0c0ffee0000000000abcd\"}, "
+                + "\"email\": \"bob@example.com\", \"role\": \"USER\"}").append("passwordHash", hash);
+
+        User user = UserImporter.toUser(doc);
+
+        assertEquals("65f0c0ffee0000000000abcd", user.getId());
+        assertEquals("bob@example.com", user.getUsername());
+        assertEquals(hash, user.getPasswordHash());
+    }
+
+    public void testHashThatIsNotBcryptIsRejected() {
+        for (String hash : new String[]{"$2a$10$existing", "5f4dcc3b5aa765d61d8327deb882cf99", "$2a$99$" + "a".repeat(53)}) {
+            try {
+                UserImporter.toUser(new Document("email", "bob@example.com").append("passwordHash", hash));
+                fail("Expected " + hash + " to be rejected");
+            } catch (IllegalArgumentException expected) {
+                assertTrue(expected.getMessage().contains("BCrypt"));
+            }
+        }
+    }
+
+    public void testMissingEmailIsRejected() {
+        try {
+            UserImporter.toUser(new Document("password", "secret1"));
+            fail("Expected a validation error");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("email"));
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.dao;
+
+import com.example.codec.UserCodec;
+import com.example.model.User;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs every UserDao finder against a collection indexed by the DAO's own constructor and
+ * fails if one would scan the whole collection, and checks how the unique indexes cope
+ * with legacy duplicates.
+ * <p>
+ * By default this runs against an in-process server, which has no query planner: each
+ * command a finder sends is checked against the indexes the server lists, using the
+ * planner's rule that an index is a candidate when its leading field has an equality or
+ * range predicate or leads the sort. With {@code -Dmongo.uri} it runs against that
+ * MongoDB instead, in a scratch database, and asks {@code explain} for the plans.
+ */
+public class UserQueryPlanTest {
+    private static final String DATABASE = "lab2_query_plan_test";
+    private static final Set<String> READS = Set.of("find", "aggregate", "count");
+    private static final Set<String> INDEXABLE_OPERATORS = Set.of("$eq", "$in", "$gt", "$gte", "$lt", "$lte");
+
+    private final List<BsonDocument> commands = new CopyOnWriteArrayList<>();
+    private MongoServer server;
+    private MongoClient client;
+    private MongoDatabase database;
+    private MongoCollection<User> users;
+
+    @Before
+    public void setUp() {
+        String uri = System.getProperty("mongo.uri");
+        if (uri == null) {
+            server = new MongoServer(new MemoryBackend());
+            InetSocketAddress address = server.bind();
+            uri = "mongodb://" + address.getHostString() + ":" + address.getPort();
+        }
+        client = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(uri))
+                .applyToClusterSettings(cluster -> cluster.serverSelectionTimeout(2, TimeUnit.SECONDS))
+                .addCommandListener(new CommandListener() {
+                    @Override
+                    public void commandStarted(CommandStartedEvent event) {
+                        if (READS.contains(event.getCommandName())) {
+                            commands.add(event.getCommand().clone());
+                        }
+                    }
+                })
+                .codecRegistry(CodecRegistries.fromRegistries(
+                        CodecRegistries.fromCodecs(new UserCodec()),
+                        MongoClientSettings.getDefaultCodecRegistry()))
+                .build());
+
+        database = client.getDatabase(DATABASE);
+        // UserIndexes builds once per collection, so every test gets its own
+        users = database.getCollection("users_" + new ObjectId(), User.class);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (users != null) {
+            // Let the background covering index finish before its collection goes away
+            awaitIndex(UserIndexes.EMAIL_AUTH);
+            users.drop();
+        }
+        client.close();
+        if (server != null) {
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    public void findersUseIndexes() throws InterruptedException {
+        UserDao dao = new UserDao(users);
+        awaitIndex(UserIndexes.EMAIL_AUTH);
+        List<User> seed = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            seed.add(new User("user" + i, "user" + i + "@example.com", "hash" + i));
+        }
+        assertEquals(200, dao.insertBatch(seed).insertedCount());
+        String id = dao.findProfilePage(null, 1).get(0).getId();
+
+        assertIndexed("findByUsername", () -> dao.findByUsername("user7"));
+        assertIndexed("findByEmail", () -> dao.findByEmail("user7@example.com"));
+        assertIndexed("findAuthByEmail", () -> dao.findAuthByEmail("user7@example.com"));
+        assertIndexed("findById", () -> dao.findById(id));
+        assertIndexed("findProfileById", () -> dao.findProfileById(id));
+        assertIndexed("findProfilePage", () -> dao.findProfilePage(id, 50));
+        assertIndexed("existsByEmail", () -> dao.existsByEmail("user7@example.com"));
+        assertIndexed("existsByUsername", () -> dao.existsByUsername("user7"));
+    }
+
+    @Test
+    public void legacyDuplicateUsernamesDoNotBlockTheEmailIndex() {
+        users.insertMany(List.of(new User("null", "a@example.com", "hash"), new User("null", "b@example.com", "hash")));
+
+        UserDao dao = new UserDao(users);
+
+        Set<String> indexes = indexNames();
+        assertTrue(indexes.contains(UserIndexes.EMAIL_UNIQUE));
+        assertFalse(indexes.contains(UserIndexes.USERNAME_UNIQUE));
+        // Without its index the username is checked before the insert instead
+        DuplicateUserException duplicate = assertThrows(DuplicateUserException.class,
+                () -> dao.insertIfAbsent(new User("null", "c@example.com", "hash")));
+        assertEquals("username", duplicate.getField());
+        duplicate = assertThrows(DuplicateUserException.class,
+                () -> dao.insertIfAbsent(new User("ada", "a@example.com", "hash")));
+        assertEquals("email", duplicate.getField());
+    }
+
+    private void assertIndexed(String finder, Runnable call) {
+        commands.clear();
+        call.run();
+        assertFalse(finder + " sent no query", commands.isEmpty());
+        for (BsonDocument command : commands) {
+            if (server == null) {
+                Document plan = database.runCommand(new Document("explain", withoutSessionFields(command))
+                        .append("verbosity", "queryPlanner"));
+                assertFalse(finder + " falls back to a collection scan: " + plan.toJson(), containsCollScan(plan));
+            } else {
+                assertNotNull(finder + " has no usable index: " + command.toJson(), candidateIndex(command));
+            }
+        }
+    }
+
+    /**
+     * The first index the planner could use for a find, aggregate or count, or null if a
+     * collection scan is the only plan.
+     */
+    private String candidateIndex(BsonDocument command) {
+        BsonDocument filter;
+        BsonDocument sort = command.getDocument("sort", new BsonDocument());
+        switch (command.getFirstKey()) {
+            case "find" -> filter = command.getDocument("filter", new BsonDocument());
+            case "count" -> filter = command.getDocument("query", new BsonDocument());
+            default -> {
+                // countDocuments runs as an aggregation starting with the same $match
+                BsonDocument first = command.getArray("pipeline").get(0).asDocument();
+                filter = first.getDocument("$match", new BsonDocument());
+            }
+        }
+        Set<String> fields = indexableFields(filter);
+        for (Document index : users.listIndexes()) {
+            String leading = index.get("key", Document.class).keySet().iterator().next();
+            if (fields.contains(leading) || (!sort.isEmpty() && sort.getFirstKey().equals(leading))) {
+                return index.getString("name");
+            }
+        }
+        return null;
+    }
+
+    private static Set<String> indexableFields(BsonDocument filter) {
+        Set<String> fields = new HashSet<>();
+        for (Map.Entry<String, BsonValue> entry : filter.entrySet()) {
+            if ("$and".equals(entry.getKey())) {
+                entry.getValue().asArray().forEach(clause -> fields.addAll(indexableFields(clause.asDocument())));
+            } else if (!entry.getKey().startsWith("$") && isIndexable(entry.getValue())) {
+                fields.add(entry.getKey());
+            }
+        }
+        return fields;
+    }
+
+    private static boolean isIndexable(BsonValue condition) {
+        if (!condition.isDocument() || condition.asDocument().isEmpty()
+                || !condition.asDocument().getFirstKey().startsWith("$")) {
+            // A plain value is an equality match
+            return true;
+        }
+        return condition.asDocument().keySet().stream().anyMatch(INDEXABLE_OPERATORS::contains);
+    }
+
+    private static BsonDocument withoutSessionFields(BsonDocument command) {
+        BsonDocument explained = new BsonDocument();
+        command.forEach((key, value) -> {
+            if (!key.startsWith("$") && !"lsid".equals(key) && !"txnNumber".equals(key)) {
+                explained.put(key, value);
+            }
+        });
+        return explained;
+    }
+
+    private Set<String> indexNames() {
+        Set<String> names = new HashSet<>();
+        users.listIndexes().forEach(index -> names.add(index.getString("name")));
+        return names;
+    }
+
+    private void awaitIndex(String name) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!indexNames().contains(name) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static boolean containsCollScan(Object node) {
+        if (node instanceof Document doc) {
+            if ("COLLSCAN".equals(doc.get("stage"))) {
+                return true;
+            }
+            return doc.values().stream().anyMatch(UserQueryPlanTest::containsCollScan);
+        }
+        if (node instanceof List<?> list) {
+            return list.stream().anyMatch(UserQueryPlanTest::containsCollScan);
+        }
+        return false;
+    }
+}
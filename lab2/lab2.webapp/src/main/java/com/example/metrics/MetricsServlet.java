@@ -0,0 +1,67 @@
+package com.example.metrics;
+
+import com.example.model.AuthPrincipal;
+import com.example.util.JwtUtil;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Optional;
+
+/**
+ * {@code GET /metrics}: {@link RequestMetrics} in Prometheus text format for scraping.
+ * <p>
+ * Only for an admin bearer token. With {@code -Dlab2.metrics.allowLoopback=true} a
+ * scraper on the same host may also read it without one; leave that off when a reverse
+ * proxy on the same host forwards public traffic, since every request then comes from
+ * the loopback address.
+ */
+@WebServlet(urlPatterns = "/metrics")
+public class MetricsServlet extends HttpServlet {
+    public static final String ALLOW_LOOPBACK_PROPERTY = "lab2.metrics.allowLoopback";
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        int status = checkAccess(req.getRemoteAddr(), req.getHeader("Authorization"),
+                Boolean.getBoolean(ALLOW_LOOPBACK_PROPERTY));
+        if (status != HttpServletResponse.SC_OK) {
+            if (status == HttpServletResponse.SC_UNAUTHORIZED) {
+                resp.setHeader("WWW-Authenticate", "Bearer");
+            }
+            resp.sendError(status);
+            return;
+        }
+        resp.setContentType("text/plain;version=0.0.4;charset=UTF-8");
+        RequestMetrics.getInstance().writePrometheus(resp.getWriter());
+    }
+
+    /**
+     * @return {@code 200} if the caller may scrape, otherwise the status to refuse it with
+     */
+    static int checkAccess(String remoteAddr, String authorization, boolean allowLoopback) {
+        if (allowLoopback && isLoopback(remoteAddr)) {
+            return HttpServletResponse.SC_OK;
+        }
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return HttpServletResponse.SC_UNAUTHORIZED;
+        }
+        Optional<AuthPrincipal> principal = JwtUtil.verify(authorization.substring("Bearer ".length()));
+        if (principal.isEmpty()) {
+            return HttpServletResponse.SC_UNAUTHORIZED;
+        }
+        return principal.get().isAdmin() ? HttpServletResponse.SC_OK : HttpServletResponse.SC_FORBIDDEN;
+    }
+
+    private static boolean isLoopback(String remoteAddr) {
+        try {
+            // getRemoteAddr() is an address literal, so this does no lookup
+            return remoteAddr != null && InetAddress.getByName(remoteAddr).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
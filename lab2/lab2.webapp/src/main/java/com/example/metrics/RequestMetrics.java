@@ -0,0 +1,264 @@
+package com.example.metrics;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Latency histograms per endpoint and per (endpoint, phase), plus a counter per response
+ * status. Every slot is allocated up front and indexed by enum ordinal, so recording is
+ * two array reads and a wait-free histogram update with no allocation or locking.
+ * <p>
+ * Exposed as the {@code com.example:type=RequestMetrics} MXBean and in Prometheus text
+ * format through {@link MetricsServlet}, which also carries the series of the sources
+ * added with {@link #addSource}.
+ */
+@Slf4j
+public class RequestMetrics implements RequestMetricsMXBean {
+    public static final String OBJECT_NAME = "com.example:type=RequestMetrics";
+
+    private static final int MAX_STATUS = 600;
+    private static final RequestMetrics INSTANCE = new RequestMetrics();
+
+    public enum Endpoint {
+        LIST_USERS("GET /users"),
+        LOGIN("POST /users/login"),
+        REGISTER("POST /users/register"),
+        REFRESH("POST /users/refresh"),
+        LOGOUT("POST /users/logout"),
+        OTHER("other");
+
+        private final String label;
+
+        Endpoint(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static Endpoint of(HttpServletRequest req) {
+            String path = req.getPathInfo();
+            return switch (req.getMethod()) {
+                case "GET" -> path == null || "/".equals(path) ? LIST_USERS : OTHER;
+                case "POST" -> switch (path == null ? "" : path) {
+                    case "/login" -> LOGIN;
+                    case "/register" -> REGISTER;
+                    case "/refresh" -> REFRESH;
+                    case "/logout" -> LOGOUT;
+                    default -> OTHER;
+                };
+                default -> OTHER;
+            };
+        }
+    }
+
+    public enum Phase {
+        JSON_PARSE("json_parse"),
+        DAO("dao"),
+        HASH("hash"),
+        SIGN("sign"),
+        VERIFY("verify"),
+        SERIALIZE("serialize");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final LatencyHistogram[] requestLatency = new LatencyHistogram[Endpoint.values().length];
+    private final LatencyHistogram[][] phaseLatency = new LatencyHistogram[Endpoint.values().length][Phase.values().length];
+    private final LongAdder[][] statusCounts = new LongAdder[Endpoint.values().length][MAX_STATUS];
+    private final Map<String, PrometheusText.Source> sources = new ConcurrentSkipListMap<>();
+
+    public RequestMetrics() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            int e = endpoint.ordinal();
+            requestLatency[e] = new LatencyHistogram();
+            for (Phase phase : Phase.values()) {
+                phaseLatency[e][phase.ordinal()] = new LatencyHistogram();
+            }
+            for (int status = 0; status < MAX_STATUS; status++) {
+                statusCounts[e][status] = new LongAdder();
+            }
+        }
+    }
+
+    public static RequestMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers this instance with the platform MBean server; a second call is a no-op.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            log.debug("{} already registered", OBJECT_NAME);
+        } catch (JMException e) {
+            log.warn("Could not register {}", OBJECT_NAME, e);
+        }
+    }
+
+    public void recordRequest(Endpoint endpoint, int status, long startNanos) {
+        requestLatency[endpoint.ordinal()].recordSince(startNanos);
+        if (status >= 0 && status < MAX_STATUS) {
+            statusCounts[endpoint.ordinal()][status].increment();
+        }
+    }
+
+    public void recordPhase(Endpoint endpoint, Phase phase, long startNanos) {
+        phaseLatency[endpoint.ordinal()][phase.ordinal()].recordSince(startNanos);
+    }
+
+    public LatencyHistogram.Snapshot getRequestLatency(Endpoint endpoint) {
+        return requestLatency[endpoint.ordinal()].snapshot();
+    }
+
+    public LatencyHistogram.Snapshot getPhaseLatency(Endpoint endpoint, Phase phase) {
+        return phaseLatency[endpoint.ordinal()][phase.ordinal()].snapshot();
+    }
+
+    public long getStatusCount(Endpoint endpoint, int status) {
+        return statusCounts[endpoint.ordinal()][status].sum();
+    }
+
+    @Override
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Endpoint endpoint : Endpoint.values()) {
+            long count = requestLatency[endpoint.ordinal()].snapshot().getCount();
+            if (count > 0) {
+                counts.put(endpoint.getLabel(), count);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getStatusCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Endpoint endpoint : Endpoint.values()) {
+            for (int status = 0; status < MAX_STATUS; status++) {
+                long count = getStatusCount(endpoint, status);
+                if (count > 0) {
+                    counts.put(endpoint.getLabel() + " " + status, count);
+                }
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getP50Micros() {
+        return latencies(snapshot -> snapshot.getPercentileMicros(50));
+    }
+
+    @Override
+    public Map<String, Long> getP99Micros() {
+        return latencies(snapshot -> snapshot.getPercentileMicros(99));
+    }
+
+    @Override
+    public Map<String, Long> getMaxMicros() {
+        return latencies(LatencyHistogram.Snapshot::getMaxMicros);
+    }
+
+    @Override
+    public void reset() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            int e = endpoint.ordinal();
+            requestLatency[e].reset();
+            for (LatencyHistogram histogram : phaseLatency[e]) {
+                histogram.reset();
+            }
+            for (LongAdder counter : statusCounts[e]) {
+                counter.reset();
+            }
+        }
+    }
+
+    /**
+     * Appends {@code source}'s series to every scrape after these, replacing an earlier
+     * source added under the same name.
+     */
+    public void addSource(String name, PrometheusText.Source source) {
+        sources.put(name, source);
+    }
+
+    public void removeSource(String name) {
+        sources.remove(name);
+    }
+
+    /**
+     * Prometheus text exposition format (version 0.0.4), latencies as summaries in
+     * microseconds, followed by each added source in name order.
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+        out.append("# TYPE lab2_http_responses_total counter\n");
+        for (Endpoint endpoint : Endpoint.values()) {
+            for (int status = 0; status < MAX_STATUS; status++) {
+                long count = getStatusCount(endpoint, status);
+                if (count > 0) {
+                    out.append("lab2_http_responses_total{endpoint=\"").append(endpoint.getLabel())
+                            .append("\",status=\"").append(Integer.toString(status)).append("\"} ")
+                            .append(Long.toString(count)).append('\n');
+                }
+            }
+        }
+
+        out.append("# TYPE lab2_http_request_micros summary\n");
+        for (Endpoint endpoint : Endpoint.values()) {
+            PrometheusText.writeSummary(out, "lab2_http_request_micros", "endpoint=\"" + endpoint.getLabel() + "\"",
+                    getRequestLatency(endpoint));
+        }
+
+        out.append("# TYPE lab2_http_phase_micros summary\n");
+        for (Endpoint endpoint : Endpoint.values()) {
+            for (Phase phase : Phase.values()) {
+                PrometheusText.writeSummary(out, "lab2_http_phase_micros",
+                        "endpoint=\"" + endpoint.getLabel() + "\",phase=\"" + phase.getLabel() + "\"",
+                        getPhaseLatency(endpoint, phase));
+            }
+        }
+
+        for (PrometheusText.Source source : sources.values()) {
+            source.writePrometheus(out);
+        }
+    }
+
+    private Map<String, Long> latencies(ToLongFunction<LatencyHistogram.Snapshot> value) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Endpoint endpoint : Endpoint.values()) {
+            LatencyHistogram.Snapshot request = getRequestLatency(endpoint);
+            if (request.getCount() > 0) {
+                result.put(endpoint.getLabel(), value.applyAsLong(request));
+            }
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram.Snapshot snapshot = getPhaseLatency(endpoint, phase);
+                if (snapshot.getCount() > 0) {
+                    result.put(endpoint.getLabel() + " " + phase.getLabel(), value.applyAsLong(snapshot));
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link RequestMetrics}. Latency keys are {@code "<endpoint>"} for whole
+ * requests and {@code "<endpoint> <phase>"} for phases; status keys are
+ * {@code "<endpoint> <status>"}. Only entries that have been recorded are listed.
+ */
+public interface RequestMetricsMXBean {
+
+    Map<String, Long> getRequestCounts();
+
+    Map<String, Long> getStatusCounts();
+
+    Map<String, Long> getP50Micros();
+
+    Map<String, Long> getP99Micros();
+
+    Map<String, Long> getMaxMicros();
+
+    void reset();
+}
@@ -0,0 +1,127 @@
+package com.example.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-client-IP and per-email {@link TokenBucket}s for the login endpoint, checked before
+ * any Mongo lookup or BCrypt work. Buckets live in size-bounded Caffeine caches and
+ * expire once idle long enough to have refilled, so a spray of distinct keys costs at
+ * most {@code maxKeys} entries per dimension and expiry never loosens a limit. Under size
+ * pressure W-TinyLFU keeps the frequently hit keys, which are the ones being throttled.
+ * <p>
+ * The IP is the container's remote address. Behind a reverse proxy or load balancer that
+ * is the proxy's, and every client would share one bucket: set {@code server.trustedProxies}
+ * for {@code EmbeddedLauncher}, or configure Tomcat's {@code RemoteIpValve} for a WAR
+ * deployment, so the address comes from the trusted {@code X-Forwarded-For} hop instead.
+ * <p>
+ * Configured with system properties ({@code <= 0} permits per minute disables a dimension):
+ * <ul>
+ *     <li>{@code lab2.login.ipPerMinute} (60), {@code lab2.login.ipBurst} (20)</li>
+ *     <li>{@code lab2.login.emailPerMinute} (10), {@code lab2.login.emailBurst} (5)</li>
+ *     <li>{@code lab2.login.maxKeys} (100000)</li>
+ * </ul>
+ */
+@Slf4j
+public class LoginRateLimiter {
+    public static final String IP_PER_MINUTE_PROPERTY = "lab2.login.ipPerMinute";
+    public static final String IP_BURST_PROPERTY = "lab2.login.ipBurst";
+    public static final String EMAIL_PER_MINUTE_PROPERTY = "lab2.login.emailPerMinute";
+    public static final String EMAIL_BURST_PROPERTY = "lab2.login.emailBurst";
+    public static final String MAX_KEYS_PROPERTY = "lab2.login.maxKeys";
+
+    private final Limiter byIp;
+    private final Limiter byEmail;
+
+    public LoginRateLimiter(int ipPerMinute, int ipBurst, int emailPerMinute, int emailBurst,
+                            long maxKeys, LongSupplier nanoClock) {
+        this.byIp = ipPerMinute > 0 ? new Limiter(ipPerMinute, ipBurst, maxKeys, nanoClock) : null;
+        this.byEmail = emailPerMinute > 0 ? new Limiter(emailPerMinute, emailBurst, maxKeys, nanoClock) : null;
+        log.info("Login rate limits: ip={}/min (burst {}), email={}/min (burst {}), maxKeys={}",
+                ipPerMinute, ipBurst, emailPerMinute, emailBurst, maxKeys);
+    }
+
+    public static LoginRateLimiter fromSystemProperties() {
+        return new LoginRateLimiter(
+                Integer.getInteger(IP_PER_MINUTE_PROPERTY, 60),
+                Integer.getInteger(IP_BURST_PROPERTY, 20),
+                Integer.getInteger(EMAIL_PER_MINUTE_PROPERTY, 10),
+                Integer.getInteger(EMAIL_BURST_PROPERTY, 5),
+                Long.getLong(MAX_KEYS_PROPERTY, 100_000),
+                System::nanoTime);
+    }
+
+    /**
+     * @return 0 if the attempt may proceed, otherwise the nanoseconds until it may be retried
+     */
+    public long tryAcquireForIp(String ip) {
+        return byIp == null ? 0 : byIp.tryAcquire(ip);
+    }
+
+    /**
+     * Emails are compared case-insensitively, so case variants share one bucket.
+     *
+     * @return 0 if the attempt may proceed, otherwise the nanoseconds until it may be retried
+     */
+    public long tryAcquireForEmail(String email) {
+        return byEmail == null ? 0 : byEmail.tryAcquire(email.trim().toLowerCase(Locale.ROOT));
+    }
+
+    public long getRejectedByIp() {
+        return byIp == null ? 0 : byIp.rejected.sum();
+    }
+
+    public long getRejectedByEmail() {
+        return byEmail == null ? 0 : byEmail.rejected.sum();
+    }
+
+    public long getTrackedKeys() {
+        return (byIp == null ? 0 : byIp.buckets.estimatedSize()) + (byEmail == null ? 0 : byEmail.buckets.estimatedSize());
+    }
+
+    /**
+     * Runs pending evictions; for tests and diagnostics.
+     */
+    void cleanUp() {
+        if (byIp != null) {
+            byIp.buckets.cleanUp();
+        }
+        if (byEmail != null) {
+            byEmail.buckets.cleanUp();
+        }
+    }
+
+    private static final class Limiter {
+        private final Cache<String, TokenBucket> buckets;
+        private final Function<String, TokenBucket> newBucket;
+        private final LongSupplier nanoClock;
+        private final LongAdder rejected = new LongAdder();
+
+        private Limiter(int permitsPerMinute, int burst, long maxKeys, LongSupplier nanoClock) {
+            long intervalNanos = TimeUnit.MINUTES.toNanos(1) / permitsPerMinute;
+            this.nanoClock = nanoClock;
+            this.newBucket = key -> new TokenBucket(intervalNanos, burst, nanoClock.getAsLong());
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maxKeys)
+                    .expireAfterAccess(Duration.ofNanos(TokenBucket.refillNanos(intervalNanos, burst)))
+                    .ticker(nanoClock::getAsLong)
+                    .build();
+        }
+
+        private long tryAcquire(String key) {
+            long wait = buckets.get(key, newBucket).tryAcquire(nanoClock.getAsLong());
+            if (wait > 0) {
+                rejected.increment();
+            }
+            return wait;
+        }
+    }
+}
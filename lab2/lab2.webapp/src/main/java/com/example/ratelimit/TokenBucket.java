@@ -0,0 +1,50 @@
+package com.example.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in its GCRA form: the whole state is one "theoretical arrival
+ * time", so acquiring is a single compare-and-set and a rejection is a plain read.
+ * A bucket holds at most {@code burst} tokens and refills one every {@code intervalNanos}.
+ */
+public class TokenBucket {
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+
+    public TokenBucket(long intervalNanos, int burst, long nowNanos) {
+        if (intervalNanos <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("interval and burst must be positive");
+        }
+        this.intervalNanos = intervalNanos;
+        this.burstNanos = intervalNanos * burst;
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes one token if available.
+     *
+     * @return 0 if a token was taken, otherwise the nanoseconds until the next one is available
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long next = Math.max(tat, nowNanos) + intervalNanos;
+            long wait = next - nowNanos - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Time after which an untouched bucket is full again and can be dropped without
+     * changing any future decision.
+     */
+    public static long refillNanos(long intervalNanos, int burst) {
+        return intervalNanos * burst;
+    }
+}
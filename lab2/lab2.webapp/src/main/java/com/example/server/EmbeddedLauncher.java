@@ -0,0 +1,106 @@
+package com.example.server;
+
+import com.example.metrics.MetricsServlet;
+import com.example.servlets.AuthServlet;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.StandardVirtualThreadExecutor;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.valves.RemoteIpValve;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+/**
+ * Runs the webapp on embedded Tomcat without a WAR. Servlets are registered explicitly
+ * and the context is created with {@link Tomcat#addContext}, which skips web.xml
+ * parsing, annotation scanning and TLD/jar scanning entirely.
+ * <p>
+ * Connector settings are read from system properties:
+ * <ul>
+ *     <li>{@code server.port} (8080), {@code server.protocol}: {@code nio} or {@code nio2}</li>
+ *     <li>{@code server.maxThreads} (200), {@code server.maxConnections} (8192),
+ *     {@code server.acceptCount} (100)</li>
+ *     <li>{@code server.keepAliveTimeoutMs} (20000), {@code server.maxKeepAliveRequests} (100)</li>
+ *     <li>{@code server.compression} ({@code on}/{@code off}/{@code force}),
+ *     {@code server.compressionMinSize} (2048 bytes)</li>
+ *     <li>{@code server.virtualThreads} (false): run the connector on a virtual-thread
+ *     executor instead of the platform thread pool</li>
+ *     <li>{@code server.trustedProxies}: regular expression matching the addresses of the
+ *     reverse proxies or load balancers in front of this server. Requests from them take
+ *     the client address from the right-most untrusted {@code X-Forwarded-For} hop, so
+ *     per-IP login limits apply to clients rather than to the proxy. Unset, the header is
+ *     ignored, since any client could forge it</li>
+ * </ul>
+ */
+@Slf4j
+public class EmbeddedLauncher {
+
+    public static void main(String[] args) throws LifecycleException, IOException {
+        long start = System.nanoTime();
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("lab2-tomcat").toString());
+
+        Connector connector = createConnector();
+        tomcat.getService().addConnector(connector);
+        tomcat.setConnector(connector);
+
+        if (Boolean.getBoolean("server.virtualThreads")) {
+            StandardVirtualThreadExecutor executor = new StandardVirtualThreadExecutor();
+            executor.setName("virtual-threads");
+            tomcat.getService().addExecutor(executor);
+            connector.getProtocolHandler().setExecutor(executor);
+        }
+
+        Context context = tomcat.addContext("", null);
+        String trustedProxies = System.getProperty("server.trustedProxies");
+        if (trustedProxies != null && !trustedProxies.isBlank()) {
+            RemoteIpValve remoteIp = new RemoteIpValve();
+            remoteIp.setInternalProxies(trustedProxies);
+            remoteIp.setRemoteIpHeader("X-Forwarded-For");
+            context.getPipeline().addValve(remoteIp);
+        }
+        Wrapper auth = Tomcat.addServlet(context, "auth", new AuthServlet());
+        auth.setAsyncSupported(true);
+        // Initialise (Mongo client, BCrypt calibration) before the first request arrives
+        auth.setLoadOnStartup(1);
+        context.addServletMappingDecoded("/users/*", "auth");
+        Tomcat.addServlet(context, "metrics", new MetricsServlet());
+        context.addServletMappingDecoded("/metrics", "metrics");
+
+        tomcat.start();
+        log.info("Started on port {} ({}, virtualThreads={}) in {} ms, {} ms since JVM start",
+                connector.getPort(), connector.getProtocolHandlerClassName(),
+                Boolean.getBoolean("server.virtualThreads"),
+                (System.nanoTime() - start) / 1_000_000,
+                ManagementFactory.getRuntimeMXBean().getUptime());
+
+        tomcat.getServer().await();
+    }
+
+    private static Connector createConnector() {
+        String protocol = System.getProperty("server.protocol", "nio");
+        Connector connector = switch (protocol.toLowerCase()) {
+            case "nio" -> new Connector("org.apache.coyote.http11.Http11NioProtocol");
+            case "nio2" -> new Connector("org.apache.coyote.http11.Http11Nio2Protocol");
+            default -> throw new IllegalArgumentException("Unsupported server.protocol: " + protocol
+                    + " (the APR connector was removed in Tomcat 10.1)");
+        };
+
+        connector.setPort(Integer.getInteger("server.port", 8080));
+        connector.setProperty("maxThreads", System.getProperty("server.maxThreads", "200"));
+        connector.setProperty("maxConnections", System.getProperty("server.maxConnections", "8192"));
+        connector.setProperty("acceptCount", System.getProperty("server.acceptCount", "100"));
+        connector.setProperty("keepAliveTimeout", System.getProperty("server.keepAliveTimeoutMs", "20000"));
+        connector.setProperty("maxKeepAliveRequests", System.getProperty("server.maxKeepAliveRequests", "100"));
+        connector.setProperty("compression", System.getProperty("server.compression", "on"));
+        connector.setProperty("compressionMinSize", System.getProperty("server.compressionMinSize", "2048"));
+        connector.setProperty("compressibleMimeType", "application/json,text/plain");
+        return connector;
+    }
+}
@@ -1,15 +1,46 @@
 package com.example.servlets;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
-import com.example.dao.UserDao;
+import com.example.config.DatabaseConfig;
+import com.example.dao.CachingUserDao;
+import com.example.dao.DuplicateUserException;
+import com.example.dao.RefreshTokenDao;
+import com.example.dao.RevocationDao;
+import com.example.dao.RevocationSync;
+import com.example.metrics.RequestMetrics;
+import com.example.metrics.RequestMetrics.Endpoint;
+import com.example.metrics.RequestMetrics.Phase;
+import com.example.model.AuthPrincipal;
 import com.example.model.User;
+import com.example.ratelimit.LoginRateLimiter;
+import com.example.servlets.JsonResponseWriter.Body;
 import com.example.util.JwtUtil;
+import com.example.util.PasswordHashExecutor;
 import com.example.util.PasswordUtil;
+import com.example.util.RefreshTokens;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -18,79 +49,354 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-@WebServlet("/users/*")
+@WebServlet(urlPatterns = "/users/*", asyncSupported = true)
 public class AuthServlet extends HttpServlet {
-    private final UserDao userDao = new UserDao();
+    private static final String BCRYPT_TARGET_MS_PROPERTY = "lab2.bcrypt.targetMs";
+    // "blocking" (default) or "virtual"; the servlet init-param executionMode takes precedence
+    private static final String EXECUTION_MODE_PROPERTY = "lab2.servlet.mode";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    // Not among the HttpServletResponse constants
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    // Async requests (virtual mode, hashing offload) time out after this; 0 disables the timeout
+    private static final long ASYNC_TIMEOUT_MS = Long.getLong("lab2.servlet.asyncTimeoutMs", 30_000);
+    // The streamed admin listing runs as long as the collection takes to read
+    private static final long STREAM_TIMEOUT_MS = Long.getLong("lab2.servlet.streamTimeoutMs", 0);
+    private static final String REFRESH_TTL_PROPERTY = "lab2.jwt.refreshTtlDays";
+    private static final Duration REFRESH_TTL = Duration.ofDays(Long.getLong(REFRESH_TTL_PROPERTY, 14));
+
+    private static final Body TOKEN_REQUIRED = Body.error("Authorization token required");
+    private static final Body INVALID_TOKEN = Body.error("Invalid or expired token");
+    private static final Body USER_NOT_FOUND = Body.error("User not found");
+    private static final Body INTERNAL_ERROR = Body.error("Internal server error");
+    private static final Body ENDPOINT_NOT_FOUND = Body.error("Endpoint not found");
+    private static final Body INVALID_CREDENTIALS = Body.error("Invalid credentials");
+    private static final Body SERVER_BUSY = Body.error("Server is busy, please retry");
+    private static final Body TOO_MANY_ATTEMPTS = Body.error("Too many login attempts, please retry later");
+    private static final Body INVALID_REFRESH_TOKEN = Body.error("Invalid or expired refresh token");
+    private static final Body REGISTERED = Body.message("User registered successfully");
+    private static final Body LOGGED_OUT = Body.message("Logged out");
+
+    private final CachingUserDao userDao = new CachingUserDao();
     private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final JsonResponseWriter jsonWriter = new JsonResponseWriter(objectMapper);
+    private final PasswordHashExecutor hashExecutor = PasswordHashExecutor.fromSystemProperties();
+    private final RequestMetrics metrics = RequestMetrics.getInstance();
+    private final LoginRateLimiter loginRateLimiter = LoginRateLimiter.fromSystemProperties();
+    private final RefreshTokenDao refreshTokenDao = new RefreshTokenDao();
+    private final RevocationDao revocationDao = new RevocationDao();
+    private RevocationSync revocationSync;
+
+    // Set in "virtual" execution mode only
+    private ExecutorService virtualThreads;
 
     @Override
-    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        resp.setContentType("application/json");
-        resp.setCharacterEncoding("UTF-8");
+    public void init() throws ServletException {
+        metrics.registerMBean();
+        // Pool occupancy and checkout latency next to the request latencies they explain
+        metrics.addSource("mongo", DatabaseConfig.getMetrics());
+        metrics.addSource("user_cache", userDao);
+        metrics.addSource("token_cache", JwtUtil.getTokenCache());
+
+        String targetMs = System.getProperty(BCRYPT_TARGET_MS_PROPERTY);
+        if (targetMs != null) {
+            PasswordUtil.calibrate(Long.parseLong(targetMs));
+        }
 
+        String mode = getInitParameter("executionMode");
+        if (mode == null) {
+            mode = System.getProperty(EXECUTION_MODE_PROPERTY, "blocking");
+        }
+        if ("virtual".equalsIgnoreCase(mode)) {
+            virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+        } else if (!"blocking".equalsIgnoreCase(mode)) {
+            throw new ServletException("Unknown execution mode: " + mode);
+        }
+        log.info("AuthServlet execution mode: {}", virtualThreads != null ? "virtual" : "blocking");
+
+        revocationSync = RevocationSync.fromSystemProperties(revocationDao, JwtUtil.getRevocations());
+    }
+
+    @Override
+    public void destroy() {
+        metrics.removeSource("mongo");
+        metrics.removeSource("user_cache");
+        metrics.removeSource("token_cache");
+        hashExecutor.close();
+        userDao.close();
+        if (revocationSync != null) {
+            revocationSync.close();
+        }
+        if (virtualThreads != null) {
+            virtualThreads.close();
+        }
+    }
+
+    /**
+     * In virtual mode every request is detached from the container thread with
+     * {@code startAsync()} and handled on its own virtual thread, so blocking on Mongo or
+     * the hashing pool no longer holds one of the connector's platform threads.
+     * <p>
+     * Request latency and status are recorded when the response is complete, which for
+     * requests that went async is in {@link CompletionRecorder}. Async requests time out
+     * after {@code lab2.servlet.asyncTimeoutMs}, except a streamed listing, which gets
+     * {@code lab2.servlet.streamTimeoutMs} (none by default).
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        long start = System.nanoTime();
+        Endpoint endpoint = Endpoint.of(req);
+
+        if (virtualThreads == null) {
+            try {
+                super.service(req, resp);
+            } catch (ServletException | IOException | RuntimeException e) {
+                metrics.recordRequest(endpoint, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, start);
+                throw e;
+            }
+            if (req.isAsyncStarted()) {
+                req.getAsyncContext().addListener(new CompletionRecorder(endpoint, start));
+            } else {
+                metrics.recordRequest(endpoint, resp.getStatus(), start);
+            }
+            return;
+        }
+
+        AsyncContext async = req.startAsync();
+        // Whether the caller is an admin is only known after the token check, so any
+        // unpaged listing request gets the stream timeout
+        boolean stream = endpoint == Endpoint.LIST_USERS
+                && req.getParameter("limit") == null && req.getParameter("after") == null;
+        async.setTimeout(stream ? STREAM_TIMEOUT_MS : ASYNC_TIMEOUT_MS);
+        CompletionRecorder recorder = new CompletionRecorder(endpoint, start);
+        async.addListener(recorder);
+        try {
+            virtualThreads.execute(() -> {
+                try {
+                    super.service(req, resp);
+                } catch (Exception e) {
+                    log.error("Error handling {} {}", req.getMethod(), req.getRequestURI(), e);
+                    if (!resp.isCommitted()) {
+                        resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    }
+                } finally {
+                    completeQuietly(async);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Only after destroy() has closed the executor
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            async.complete();
+        }
+    }
+
+    /**
+     * Completes the request unless a timeout or error already did.
+     */
+    private static void completeQuietly(AsyncContext async) {
+        try {
+            async.complete();
+        } catch (IllegalStateException e) {
+            log.debug("Request was already completed", e);
+        }
+    }
+
+    /**
+     * Records an async request exactly once: when it completes, or when it times out or
+     * fails, in which case the request is answered (if nothing was sent yet) and completed
+     * here rather than left to hang.
+     */
+    private final class CompletionRecorder implements AsyncListener {
+        private final Endpoint endpoint;
+        private final long start;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+
+        private CompletionRecorder(Endpoint endpoint, long start) {
+            this.endpoint = endpoint;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            record(((HttpServletResponse) event.getSuppliedResponse()).getStatus());
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            log.warn("Request timed out after {} ms", event.getAsyncContext().getTimeout());
+            fail(event, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            log.warn("Async request failed", event.getThrowable());
+            fail(event, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+
+        private void fail(AsyncEvent event, int status) {
+            HttpServletResponse resp = (HttpServletResponse) event.getSuppliedResponse();
+            if (!resp.isCommitted()) {
+                resp.reset();
+                resp.setStatus(status);
+            }
+            record(status);
+            completeQuietly(event.getAsyncContext());
+        }
+
+        private void record(int status) {
+            if (recorded.compareAndSet(false, true)) {
+                metrics.recordRequest(endpoint, status, start);
+            }
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         try {
             String authHeader = req.getHeader("Authorization");
 
             if(authHeader == null || !authHeader.startsWith("Bearer ")) {
-                resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                resp.getWriter().write("{\"error\": \"Authorization token required\"}");
+                jsonWriter.write(resp, HttpServletResponse.SC_UNAUTHORIZED, TOKEN_REQUIRED);
                 return;
             }
 
             String token = authHeader.replace("Bearer ", "");
 
-            if(!JwtUtil.isTokenValid(token)) {
-                resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                resp.getWriter().write("{\"error\": \"Invalid or expired token\"}");
+            long verifyStart = System.nanoTime();
+            Optional<AuthPrincipal> principal = JwtUtil.verify(token);
+            metrics.recordPhase(Endpoint.LIST_USERS, Phase.VERIFY, verifyStart);
+            if(principal.isEmpty()) {
+                jsonWriter.write(resp, HttpServletResponse.SC_UNAUTHORIZED, INVALID_TOKEN);
                 return;
             }
 
-            String role = JwtUtil.getRoleFromToken(token);
-            String userId = JwtUtil.getUserIdFromToken(token);
+            String userId = principal.get().getUserId();
 
-            if("admin".equalsIgnoreCase(role)) {
-                var users = userDao.findAll();
-                users.forEach(user -> user.setPasswordHash(null));
-                resp.getWriter().write(objectMapper.writeValueAsString(users));
+            if(principal.get().isAdmin()) {
+                if (req.getParameter("limit") != null || req.getParameter("after") != null) {
+                    writeUserPage(req, resp);
+                } else {
+                    streamAllUsers(resp);
+                }
             } else {
-                Optional<User> user = userDao.findById(userId);
+                long daoStart = System.nanoTime();
+                Optional<User> user = userDao.findProfileById(userId);
+                metrics.recordPhase(Endpoint.LIST_USERS, Phase.DAO, daoStart);
                 if(user.isPresent()) {
-                    user.get().setPasswordHash(null);
-                    resp.getWriter().write(objectMapper.writeValueAsString(user.get()));
+                    // Polling clients revalidate with If-None-Match and skip the body when unchanged
+                    String etag = ETags.of(user.get().getId(), user.get().getUpdatedAt());
+                    resp.setHeader("ETag", etag);
+                    resp.setHeader("Cache-Control", "private, no-cache");
+                    if (ETags.matches(req.getHeader("If-None-Match"), etag)) {
+                        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                        return;
+                    }
+
+                    long serializeStart = System.nanoTime();
+                    jsonWriter.writeValue(resp, user.get());
+                    metrics.recordPhase(Endpoint.LIST_USERS, Phase.SERIALIZE, serializeStart);
                 }
                 else {
-                    resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                    resp.getWriter().write("{\"error\": \"User not found\"}");
+                    jsonWriter.write(resp, HttpServletResponse.SC_NOT_FOUND, USER_NOT_FOUND);
                 }
             }
         } catch (Exception e) {
             log.error("Error in doGet", e);
-            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            resp.getWriter().write("{\"error\": \"Internal server error\"}");
+            if (!resp.isCommitted()) {
+                resp.reset();
+                jsonWriter.write(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, INTERNAL_ERROR);
+            }
         }
     }
 
+    /**
+     * {@code GET /users?limit=N&after=<id>}: one keyset page plus the cursor for the next one.
+     */
+    private void writeUserPage(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        int limit;
+        try {
+            String limitParam = req.getParameter("limit");
+            limit = limitParam == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(limitParam);
+        } catch (NumberFormatException e) {
+            writeJsonResponse(resp, HttpServletResponse.SC_BAD_REQUEST, "limit must be a number");
+            return;
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            writeJsonResponse(resp, HttpServletResponse.SC_BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+            return;
+        }
+
+        List<User> users;
+        long daoStart = System.nanoTime();
+        try {
+            users = userDao.findProfilePage(req.getParameter("after"), limit);
+            metrics.recordPhase(Endpoint.LIST_USERS, Phase.DAO, daoStart);
+        } catch (IllegalArgumentException e) {
+            writeJsonResponse(resp, HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor");
+            return;
+        }
+
+        String nextCursor = users.size() == limit ? users.get(users.size() - 1).getId() : null;
+        long serializeStart = System.nanoTime();
+        try (JsonGenerator generator = jsonWriter.createGenerator(resp)) {
+            generator.writeStartObject();
+            generator.writeFieldName("users");
+            jsonWriter.getValueWriter().writeValue(generator, users);
+            generator.writeStringField("nextCursor", nextCursor);
+            generator.writeEndObject();
+        }
+        metrics.recordPhase(Endpoint.LIST_USERS, Phase.SERIALIZE, serializeStart);
+    }
+
+    /**
+     * {@code GET /users}: writes every user to the response as a JSON array while reading
+     * the cursor, so memory use stays flat regardless of the collection size.
+     */
+    private void streamAllUsers(HttpServletResponse resp) throws IOException {
+        ObjectWriter valueWriter = jsonWriter.getValueWriter();
+        // Cursor reads and writes interleave here, so the whole stream counts as the dao phase
+        long daoStart = System.nanoTime();
+        try (JsonGenerator generator = jsonWriter.createGenerator(resp)) {
+            generator.writeStartArray();
+            userDao.forEachProfile(user -> {
+                try {
+                    valueWriter.writeValue(generator, user);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
+        metrics.recordPhase(Endpoint.LIST_USERS, Phase.DAO, daoStart);
+    }
+
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        resp.setContentType("application/json");
-        resp.setCharacterEncoding("UTF-8");
-
         String pathInfo = req.getPathInfo();
         if ("/register".equals(pathInfo)) {
             handleRegister(req, resp);
         } else if ("/login".equals(pathInfo)) {
             handleLogin(req, resp);
+        } else if ("/refresh".equals(pathInfo)) {
+            handleRefresh(req, resp);
+        } else if ("/logout".equals(pathInfo)) {
+            handleLogout(req, resp);
         } else {
-            resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            resp.getWriter().write("{\"error\": \"Endpoint not found\"}");
+            jsonWriter.write(resp, HttpServletResponse.SC_NOT_FOUND, ENDPOINT_NOT_FOUND);
         }
     }
 
     private void handleRegister(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         try {
+            long parseStart = System.nanoTime();
             JsonNode json = objectMapper.readTree(req.getReader());
+            metrics.recordPhase(Endpoint.REGISTER, Phase.JSON_PARSE, parseStart);
 
-            String username = String.valueOf(json.get("username"));
+            String username = json.path("username").asText(null);
             String email = json.get("email").asText(null);
             String password = json.get("password").asText(null);
 
@@ -106,22 +412,23 @@ public class AuthServlet extends HttpServlet {
                 return;
             }
 
-            if (userDao.existsByEmail(email)) {
-                writeJsonResponse(resp, HttpServletResponse.SC_CONFLICT, "Email already exists");
-                return;
-            }
-
-            String hashedPassword = PasswordUtil.hashPassword(password);
-            User user = new User(username, email, hashedPassword);
-            user = userDao.save(user);
-
-//            String token = JwtUtil.generateToken(user);
+            // No existence check up front: insertIfAbsent rejects duplicates
+            String finalUsername = username;
+            offloadHashing(req, resp, timed(Endpoint.REGISTER, () -> PasswordUtil.hashPassword(password)), hashedPassword -> {
+                long daoStart = System.nanoTime();
+                try {
+                    userDao.insertIfAbsent(new User(finalUsername, email, hashedPassword));
+                } catch (DuplicateUserException e) {
+                    writeJsonResponse(resp, HttpServletResponse.SC_CONFLICT,
+                            "username".equals(e.getField()) ? "Username already exists" : "Email already exists");
+                    return;
+                } finally {
+                    metrics.recordPhase(Endpoint.REGISTER, Phase.DAO, daoStart);
+                }
 
-            resp.setStatus(HttpServletResponse.SC_CREATED);
-            resp.getWriter().write(
-                    String.valueOf("{\"message\": \"User registered successfully\", \"}")
-            );
-            log.info("User registered successfully: {}", username);
+                jsonWriter.write(resp, HttpServletResponse.SC_CREATED, REGISTERED);
+                log.info("User registered successfully: {}", finalUsername);
+            }, "Registration failed");
 
         } catch (Exception e) {
             log.error("Error during registration", e);
@@ -130,8 +437,15 @@ public class AuthServlet extends HttpServlet {
     }
 
     private void handleLogin(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        // Throttled before the body is even parsed, so a burst never reaches Mongo or BCrypt
+        if (rejectIfThrottled(resp, loginRateLimiter.tryAcquireForIp(req.getRemoteAddr()))) {
+            return;
+        }
+
         try {
+            long parseStart = System.nanoTime();
             JsonNode json = objectMapper.readTree(req.getReader());
+            metrics.recordPhase(Endpoint.LOGIN, Phase.JSON_PARSE, parseStart);
 
             String email = json.get("email").asText(null);
             String password = json.get("password").asText(null);
@@ -140,28 +454,59 @@ public class AuthServlet extends HttpServlet {
                 writeJsonResponse(resp, HttpServletResponse.SC_BAD_REQUEST, "Email and password are required");
                 return;
             }
+            if (rejectIfThrottled(resp, loginRateLimiter.tryAcquireForEmail(email))) {
+                return;
+            }
 
             // Find user
-            Optional<User> userOpt = userDao.findByEmail(email);
+            long daoStart = System.nanoTime();
+            Optional<User> userOpt = userDao.findAuthByEmail(email);
+            metrics.recordPhase(Endpoint.LOGIN, Phase.DAO, daoStart);
             if (userOpt.isEmpty()) {
-                writeJsonResponse(resp, HttpServletResponse.SC_UNAUTHORIZED, "Invalid credentials");
+                jsonWriter.write(resp, HttpServletResponse.SC_UNAUTHORIZED, INVALID_CREDENTIALS);
                 return;
             }
 
             User user = userOpt.get();
 
-            if (!PasswordUtil.verifyPassword(password, user.getPasswordHash())) {
-                writeJsonResponse(resp, HttpServletResponse.SC_UNAUTHORIZED, "Invalid credentials");
-                return;
-            }
+            // Verify and, if the stored cost differs from the current one, rehash in the same task
+            offloadHashing(req, resp, timed(Endpoint.LOGIN, () -> {
+                if (!PasswordUtil.verifyPassword(password, user.getPasswordHash())) {
+                    return PasswordCheck.MISMATCH;
+                }
+                String rehashed = PasswordUtil.needsRehash(user.getPasswordHash())
+                        ? PasswordUtil.hashPassword(password)
+                        : null;
+                return new PasswordCheck(true, rehashed);
+            }), check -> {
+                if (!check.matches()) {
+                    jsonWriter.write(resp, HttpServletResponse.SC_UNAUTHORIZED, INVALID_CREDENTIALS);
+                    return;
+                }
+
+                if (check.rehashed() != null) {
+                    long updateStart = System.nanoTime();
+                    userDao.updatePasswordHash(user.getId(), check.rehashed());
+                    metrics.recordPhase(Endpoint.LOGIN, Phase.DAO, updateStart);
+                    log.info("Rehashed password for user {} with cost {}", email, PasswordUtil.getStrength());
+                }
 
-            // Generate token
-            String token = JwtUtil.generateToken(user);
+                // Generate a short-lived access token and start a refresh token family
+                long signStart = System.nanoTime();
+                String token = JwtUtil.generateToken(user);
+                metrics.recordPhase(Endpoint.LOGIN, Phase.SIGN, signStart);
 
-            resp.getWriter().write(
-                    String.format("{\"message\": \"Login successful\", \"token\": \"%s\", \"role\": \"%s\"}", token, user.getRole())
-            );
-            log.info("User logged in successfully: {}", email);
+                long refreshStart = System.nanoTime();
+                String refreshToken = RefreshTokens.newToken();
+                refreshTokenDao.create(RefreshTokens.hash(refreshToken), user.getId(), UUID.randomUUID().toString(),
+                        Instant.now().plus(REFRESH_TTL));
+                metrics.recordPhase(Endpoint.LOGIN, Phase.DAO, refreshStart);
+
+                long serializeStart = System.nanoTime();
+                jsonWriter.writeLogin(resp, token, refreshToken, JwtUtil.getAccessTtl().toSeconds(), user.getRole());
+                metrics.recordPhase(Endpoint.LOGIN, Phase.SERIALIZE, serializeStart);
+                log.info("User logged in successfully: {}", email);
+            }, "Login failed");
 
         } catch (Exception e) {
             log.error("Error during login", e);
@@ -169,9 +514,210 @@ public class AuthServlet extends HttpServlet {
         }
     }
 
+    /**
+     * {@code POST /users/refresh}: exchanges a refresh token for a new access token and a
+     * new refresh token. Presenting a refresh token twice revokes its family and every
+     * access token of the user.
+     */
+    private void handleRefresh(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        try {
+            long parseStart = System.nanoTime();
+            JsonNode json = objectMapper.readTree(req.getReader());
+            metrics.recordPhase(Endpoint.REFRESH, Phase.JSON_PARSE, parseStart);
+
+            String presented = json.path("refreshToken").asText(null);
+            if (presented == null || presented.isEmpty()) {
+                writeJsonResponse(resp, HttpServletResponse.SC_BAD_REQUEST, "refreshToken is required");
+                return;
+            }
+
+            Instant now = Instant.now();
+            String refreshToken = RefreshTokens.newToken();
+            long daoStart = System.nanoTime();
+            RefreshTokenDao.Rotation rotation = refreshTokenDao.rotate(
+                    RefreshTokens.hash(presented), RefreshTokens.hash(refreshToken), now, now.plus(REFRESH_TTL));
+            metrics.recordPhase(Endpoint.REFRESH, Phase.DAO, daoStart);
+
+            if (rotation.outcome() == RefreshTokenDao.Outcome.REUSED) {
+                revokeUserTokens(rotation.userId(), now);
+            }
+            if (rotation.outcome() != RefreshTokenDao.Outcome.ROTATED) {
+                jsonWriter.write(resp, HttpServletResponse.SC_UNAUTHORIZED, INVALID_REFRESH_TOKEN);
+                return;
+            }
+
+            // Re-read so a role change applies from the next access token on
+            long userStart = System.nanoTime();
+            Optional<User> user = userDao.findProfileById(rotation.userId());
+            metrics.recordPhase(Endpoint.REFRESH, Phase.DAO, userStart);
+            if (user.isEmpty()) {
+                jsonWriter.write(resp, HttpServletResponse.SC_UNAUTHORIZED, INVALID_REFRESH_TOKEN);
+                return;
+            }
+
+            long signStart = System.nanoTime();
+            String token = JwtUtil.generateToken(user.get());
+            metrics.recordPhase(Endpoint.REFRESH, Phase.SIGN, signStart);
+
+            long serializeStart = System.nanoTime();
+            jsonWriter.writeRefreshed(resp, token, refreshToken, JwtUtil.getAccessTtl().toSeconds(), user.get().getRole());
+            metrics.recordPhase(Endpoint.REFRESH, Phase.SERIALIZE, serializeStart);
+        } catch (Exception e) {
+            log.error("Error during token refresh", e);
+            writeJsonResponse(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Token refresh failed");
+        }
+    }
+
+    /**
+     * {@code POST /users/logout} with the access token as bearer: revokes that token and,
+     * given {@code refreshToken}, its session. {@code "allSessions": true} ends every
+     * session of the user.
+     */
+    private void handleLogout(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String authHeader = req.getHeader("Authorization");
+        Optional<AuthPrincipal> principal = authHeader != null && authHeader.startsWith("Bearer ")
+                ? JwtUtil.verify(authHeader.substring("Bearer ".length()))
+                : Optional.empty();
+        if (principal.isEmpty()) {
+            jsonWriter.write(resp, HttpServletResponse.SC_UNAUTHORIZED, INVALID_TOKEN);
+            return;
+        }
+
+        try {
+            long parseStart = System.nanoTime();
+            JsonNode json = objectMapper.readTree(req.getReader());
+            metrics.recordPhase(Endpoint.LOGOUT, Phase.JSON_PARSE, parseStart);
+
+            AuthPrincipal current = principal.get();
+            long daoStart = System.nanoTime();
+            if (current.getTokenId() != null) {
+                JwtUtil.getRevocations().revokeToken(current.getTokenId(), current.getExpiresAt());
+                revocationDao.revokeToken(current.getTokenId(), current.getExpiresAt());
+            }
+            String refreshToken = json.path("refreshToken").asText(null);
+            if (refreshToken != null) {
+                refreshTokenDao.revokeFamily(RefreshTokens.hash(refreshToken));
+            }
+            if (json.path("allSessions").asBoolean(false)) {
+                refreshTokenDao.revokeAllForUser(current.getUserId());
+                revokeUserTokens(current.getUserId(), Instant.now());
+            }
+            metrics.recordPhase(Endpoint.LOGOUT, Phase.DAO, daoStart);
+
+            jsonWriter.write(resp, HttpServletResponse.SC_OK, LOGGED_OUT);
+        } catch (Exception e) {
+            log.error("Error during logout", e);
+            writeJsonResponse(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Logout failed");
+        }
+    }
+
+    /**
+     * Revokes every access token of the user issued before {@code cutoff}, here at once and
+     * on other nodes with their next revocation sync.
+     */
+    private void revokeUserTokens(String userId, Instant cutoff) {
+        JwtUtil.getRevocations().revokeUser(userId, cutoff);
+        // TokenRevocationList rounds the cut-off up to the second, so keep the entry that much longer
+        revocationDao.revokeUser(userId, cutoff, cutoff.plus(JwtUtil.getAccessTtl()).plusSeconds(1));
+    }
+
+    private boolean rejectIfThrottled(HttpServletResponse resp, long waitNanos) throws IOException {
+        if (waitNanos == 0) {
+            return false;
+        }
+        resp.setHeader("Retry-After", Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+        jsonWriter.write(resp, SC_TOO_MANY_REQUESTS, TOO_MANY_ATTEMPTS);
+        return true;
+    }
+
+    /**
+     * Runs {@code hashing} on the password hashing pool and finishes the request
+     * asynchronously with {@code then} on a container thread, so BCrypt never runs on
+     * connector threads. A full hashing queue is answered with 503 straight away.
+     */
+    private <T> void offloadHashing(HttpServletRequest req, HttpServletResponse resp, Supplier<T> hashing,
+                                    HashingContinuation<T> then, String failureMessage) throws IOException {
+        CompletableFuture<T> result;
+        try {
+            result = hashExecutor.submit(hashing);
+        } catch (RejectedExecutionException e) {
+            log.warn("Password hashing queue full ({} queued), rejecting {}", hashExecutor.getQueueDepth(), req.getPathInfo());
+            resp.setHeader("Retry-After", "1");
+            jsonWriter.write(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, SERVER_BUSY);
+            return;
+        }
+
+        if (virtualThreads != null) {
+            // Already on a virtual thread inside the request's async cycle: waiting only
+            // parks this virtual thread, and a second startAsync() would be illegal here
+            try {
+                finishHashing(req, resp, result.join(), null, then, failureMessage);
+            } catch (CompletionException e) {
+                finishHashing(req, resp, null, e.getCause(), then, failureMessage);
+            }
+            return;
+        }
+
+        AsyncContext async = req.startAsync();
+        async.setTimeout(ASYNC_TIMEOUT_MS);
+        result.whenComplete((value, error) -> {
+            try {
+                async.start(() -> {
+                    try {
+                        finishHashing(req, resp, value, error, then, failureMessage);
+                    } finally {
+                        completeQuietly(async);
+                    }
+                });
+            } catch (IllegalStateException e) {
+                // Timed out while queued; CompletionRecorder has answered already
+                log.debug("Hashing finished after {} timed out", req.getPathInfo());
+            }
+        });
+    }
+
+    /**
+     * Times the hashing task itself on the pool thread, so the hash phase excludes queue wait.
+     */
+    private <T> Supplier<T> timed(Endpoint endpoint, Supplier<T> hashing) {
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                return hashing.get();
+            } finally {
+                metrics.recordPhase(endpoint, Phase.HASH, start);
+            }
+        };
+    }
+
+    private <T> void finishHashing(HttpServletRequest req, HttpServletResponse resp, T value, Throwable error,
+                                   HashingContinuation<T> then, String failureMessage) {
+        try {
+            if (error != null) {
+                throw error;
+            }
+            then.accept(value);
+        } catch (Throwable e) {
+            log.error("Error during {}", req.getPathInfo(), e);
+            try {
+                writeJsonResponse(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, failureMessage);
+            } catch (IOException ioe) {
+                log.debug("Could not write error response", ioe);
+            }
+        }
+    }
+
+    private record PasswordCheck(boolean matches, String rehashed) {
+        static final PasswordCheck MISMATCH = new PasswordCheck(false, null);
+    }
+
+    @FunctionalInterface
+    private interface HashingContinuation<T> {
+        void accept(T value) throws IOException;
+    }
+
     private void writeJsonResponse(HttpServletResponse resp, int statusCode, String message) throws IOException {
-        resp.setStatus(statusCode);
-        resp.getWriter().write(String.format("{\"error\": \"%s\"}", message));
+        jsonWriter.writeError(resp, statusCode, message);
     }
 
 }
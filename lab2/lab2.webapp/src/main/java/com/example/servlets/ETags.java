@@ -0,0 +1,45 @@
+package com.example.servlets;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Strong entity tags and {@code If-None-Match} evaluation (RFC 9110, section 13.1.2).
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * A tag that changes whenever the document's {@code updatedAt} does; the id keeps tags
+     * of different documents with the same timestamp apart.
+     */
+    public static String of(String id, LocalDateTime updatedAt) {
+        long version = updatedAt == null ? 0 : updatedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + updatedAt.getNano();
+        return "\"" + id + "-" + Long.toHexString(version) + "\"";
+    }
+
+    /**
+     * Whether {@code ifNoneMatch} names {@code etag}, i.e. the client's copy is current.
+     * Uses the weak comparison the specification prescribes for this header, so a
+     * {@code W/} prefix on either side is ignored.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag) || stripWeak(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
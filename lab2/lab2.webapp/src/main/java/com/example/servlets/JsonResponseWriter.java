@@ -0,0 +1,186 @@
+package com.example.servlets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.example.model.User;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Writes the servlet's JSON bodies straight to the response's UTF-8 byte stream.
+ * Constant bodies are encoded once into a {@link Body}; dynamic ones go through a
+ * {@link JsonGenerator} with pre-encoded field names, so values are escaped properly
+ * and no intermediate {@code String} is built for the payload.
+ * <p>
+ * Everything here writes to {@link HttpServletResponse#getOutputStream()}; a servlet
+ * using this class must not call {@code getWriter()} on the same response.
+ */
+public class JsonResponseWriter {
+    public static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+
+    private static final SerializableString ERROR = new SerializedString("error");
+    private static final SerializableString MESSAGE = new SerializedString("message");
+    private static final SerializableString TOKEN = new SerializedString("token");
+    private static final SerializableString REFRESH_TOKEN = new SerializedString("refreshToken");
+    private static final SerializableString EXPIRES_IN = new SerializedString("expiresIn");
+    private static final SerializableString ROLE = new SerializedString("role");
+    private static final SerializableString LOGIN_SUCCESSFUL = new SerializedString("Login successful");
+    private static final SerializableString TOKEN_REFRESHED = new SerializedString("Token refreshed");
+
+    private final JsonFactory jsonFactory;
+    private final ObjectWriter valueWriter;
+
+    public JsonResponseWriter(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.valueWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * A complete JSON body encoded once, for responses whose content never changes.
+     */
+    public static final class Body {
+        private final byte[] bytes;
+
+        private Body(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        public static Body error(String message) {
+            return of(ERROR, message);
+        }
+
+        public static Body message(String message) {
+            return of(MESSAGE, message);
+        }
+
+        private static Body of(SerializableString field, String value) {
+            // Goes through the generator once so the constant is escaped like any other value
+            try (var out = new ByteArrayOutputStream();
+                 JsonGenerator generator = new JsonFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                generator.writeStartObject();
+                generator.writeFieldName(field);
+                generator.writeString(value);
+                generator.writeEndObject();
+                generator.flush();
+                return new Body(out.toByteArray());
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot encode JSON body", e);
+            }
+        }
+
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    public void write(HttpServletResponse resp, int status, Body body) throws IOException {
+        prepare(resp, status);
+        resp.setContentLength(body.bytes.length);
+        write(resp.getOutputStream(), body);
+    }
+
+    public void writeError(HttpServletResponse resp, int status, String message) throws IOException {
+        prepare(resp, status);
+        writeError(resp.getOutputStream(), message);
+    }
+
+    public void writeLogin(HttpServletResponse resp, String token, String refreshToken, long expiresInSeconds,
+                           User.Role role) throws IOException {
+        prepare(resp, HttpServletResponse.SC_OK);
+        writeTokens(resp.getOutputStream(), LOGIN_SUCCESSFUL, token, refreshToken, expiresInSeconds, role);
+    }
+
+    public void writeRefreshed(HttpServletResponse resp, String token, String refreshToken, long expiresInSeconds,
+                               User.Role role) throws IOException {
+        prepare(resp, HttpServletResponse.SC_OK);
+        writeTokens(resp.getOutputStream(), TOKEN_REFRESHED, token, refreshToken, expiresInSeconds, role);
+    }
+
+    public void writeValue(HttpServletResponse resp, Object value) throws IOException {
+        resp.setContentType(CONTENT_TYPE);
+        writeValue(resp.getOutputStream(), value);
+    }
+
+    /**
+     * A generator over the response stream for bodies written piece by piece; the caller
+     * closes it. Values can be added with {@link #getValueWriter()}.
+     */
+    public JsonGenerator createGenerator(HttpServletResponse resp) throws IOException {
+        resp.setContentType(CONTENT_TYPE);
+        return createGenerator(resp.getOutputStream());
+    }
+
+    public ObjectWriter getValueWriter() {
+        return valueWriter;
+    }
+
+    // Stream-level variants, used by the methods above and by the benchmarks
+
+    public void write(OutputStream out, Body body) throws IOException {
+        out.write(body.bytes);
+    }
+
+    public void writeError(OutputStream out, String message) throws IOException {
+        try (JsonGenerator generator = createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeFieldName(ERROR);
+            generator.writeString(message);
+            generator.writeEndObject();
+        }
+    }
+
+    public void writeLogin(OutputStream out, String token, String refreshToken, long expiresInSeconds,
+                           User.Role role) throws IOException {
+        writeTokens(out, LOGIN_SUCCESSFUL, token, refreshToken, expiresInSeconds, role);
+    }
+
+    private void writeTokens(OutputStream out, SerializableString message, String token, String refreshToken,
+                             long expiresInSeconds, User.Role role) throws IOException {
+        try (JsonGenerator generator = createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeFieldName(MESSAGE);
+            generator.writeString(message);
+            generator.writeFieldName(TOKEN);
+            generator.writeString(token);
+            generator.writeFieldName(REFRESH_TOKEN);
+            generator.writeString(refreshToken);
+            generator.writeFieldName(EXPIRES_IN);
+            generator.writeNumber(expiresInSeconds);
+            generator.writeFieldName(ROLE);
+            generator.writeString(role.name());
+            generator.writeEndObject();
+        }
+    }
+
+    public void writeValue(OutputStream out, Object value) throws IOException {
+        try (JsonGenerator generator = createGenerator(out)) {
+            valueWriter.writeValue(generator, value);
+        }
+    }
+
+    private JsonGenerator createGenerator(OutputStream out) throws IOException {
+        // The servlet container owns the stream; closing the generator only flushes it
+        return jsonFactory.createGenerator(out, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private static void prepare(HttpServletResponse resp, int status) {
+        resp.setStatus(status);
+        resp.setContentType(CONTENT_TYPE);
+    }
+}
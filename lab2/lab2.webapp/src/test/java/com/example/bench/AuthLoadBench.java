@@ -0,0 +1,91 @@
+package com.example.bench;
+
+import com.example.metrics.LatencyHistogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load generator for a running lab2.webapp. Each of {@code concurrency}
+ * clients sends {@code GET /users} back to back for {@code seconds}, after a warm-up.
+ * Start the server once with {@code -Dlab2.servlet.mode=blocking} and once with
+ * {@code virtual}, run this against each, and compare RPS and p99:
+ * <pre>
+ *   AuthLoadBench http://localhost:8080/users &lt;token&gt; [concurrency=200] [seconds=30]
+ * </pre>
+ */
+public class AuthLoadBench {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: AuthLoadBench <url> <bearer-token> [concurrency] [seconds]");
+            System.exit(1);
+        }
+        URI uri = URI.create(args[0]);
+        String token = args[1];
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+
+        System.out.printf("Warming up for %ds...%n", Math.max(5, seconds / 5));
+        run(client, request, concurrency, Math.max(5, seconds / 5));
+
+        Result result = run(client, request, concurrency, seconds);
+        LatencyHistogram.Snapshot latency = result.latency().snapshot();
+        System.out.printf("concurrency=%d duration=%ds%n", concurrency, seconds);
+        System.out.printf("requests=%d errors=%d rps=%.1f%n",
+                latency.getCount(), result.errors(), latency.getCount() / (double) seconds);
+        System.out.printf("latency p50=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms%n",
+                latency.getPercentileMicros(50) / 1000.0, latency.getPercentileMicros(99) / 1000.0,
+                latency.getPercentileMicros(99.9) / 1000.0, latency.getMaxMicros() / 1000.0);
+    }
+
+    private static Result run(HttpClient client, HttpRequest request, int concurrency, int seconds)
+            throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder errors = new LongAdder();
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Runnable> workers = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            latency.recordSince(start);
+                            if (response.statusCode() >= 400) {
+                                errors.increment();
+                            }
+                        } catch (Exception e) {
+                            errors.increment();
+                        }
+                    }
+                });
+            }
+            workers.forEach(clients::execute);
+        }
+        return new Result(latency, errors.sum());
+    }
+
+    private record Result(LatencyHistogram latency, long errors) {
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.bench;
+
+import com.example.model.User;
+import com.example.servlets.JsonResponseWriter;
+import com.example.servlets.JsonResponseWriter.Body;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the servlet's original String-building responses ("legacy": String.format or
+ * writeValueAsString, then the response Writer) with {@link JsonResponseWriter} writing
+ * to the byte stream. Both sides write to a discarding stream, so {@code gc.alloc.rate.norm}
+ * from the GC profiler is the garbage produced per response body.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonResponseBenchmark {
+    private static final Body INVALID_CREDENTIALS = Body.error("Invalid credentials");
+
+    private ObjectMapper objectMapper;
+    private JsonResponseWriter jsonWriter;
+    private OutputStream out;
+    private Writer writer;
+    private User user;
+    private String token;
+    private String refreshToken;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        jsonWriter = new JsonResponseWriter(objectMapper);
+        out = OutputStream.nullOutputStream();
+        // Stands in for the container's response Writer, which is reused across requests
+        writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+
+        user = new User("bench", "bench@example.com", null);
+        user.setId("65f0c0ffee0000000000abcd");
+        token = "eyJhbGciOiJIUzI1NiJ9.eyJzdWIiOiI2NWYwYzBmZmVlMDAwMDAwMDAwMGFiY2QiLCJyb2xlIjoiVVNFUiJ9"
+                + ".c2lnbmF0dXJlLXBsYWNlaG9sZGVyLWZvci10aGUtYmVuY2htYXJr";
+        refreshToken = "q3Jx0b7mUuT1n0Ff2m4qvS6cY8wZk1pR5dA9eH2gL0s";
+    }
+
+    @Benchmark
+    public void legacyConstantError() throws IOException {
+        writer.write(String.format("{\"error\": \"%s\"}", "Invalid credentials"));
+        writer.flush();
+    }
+
+    @Benchmark
+    public void preencodedConstantError() throws IOException {
+        jsonWriter.write(out, INVALID_CREDENTIALS);
+    }
+
+    @Benchmark
+    public void legacyDynamicError() throws IOException {
+        writer.write(String.format("{\"error\": \"%s\"}", "limit must be between 1 and 1000"));
+        writer.flush();
+    }
+
+    @Benchmark
+    public void streamedDynamicError() throws IOException {
+        jsonWriter.writeError(out, "limit must be between 1 and 1000");
+    }
+
+    @Benchmark
+    public void legacyLogin() throws IOException {
+        writer.write(String.format("{\"message\": \"Login successful\", \"token\": \"%s\", \"refreshToken\": \"%s\", "
+                + "\"expiresIn\": %d, \"role\": \"%s\"}", token, refreshToken, 900, user.getRole()));
+        writer.flush();
+    }
+
+    @Benchmark
+    public void streamedLogin() throws IOException {
+        jsonWriter.writeLogin(out, token, refreshToken, 900, user.getRole());
+    }
+
+    @Benchmark
+    public void legacyProfile() throws IOException {
+        writer.write(objectMapper.writeValueAsString(user));
+        writer.flush();
+    }
+
+    @Benchmark
+    public void streamedProfile() throws IOException {
+        jsonWriter.writeValue(out, user);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JsonResponseBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.bench;
+
+import com.example.ratelimit.LoginRateLimiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Aggregate {@link LoginRateLimiter} throughput on one thread and on every core. Each
+ * thread uses its own keys, so no bucket is shared and throughput should grow with the
+ * thread count:
+ * <pre>
+ *   LoginRateLimiterBench [opsPerThread=200000] [threads=cores]
+ * </pre>
+ */
+public class LoginRateLimiterBench {
+    private static final int KEYS_PER_THREAD = 64;
+
+    public static void main(String[] args) throws Exception {
+        int perThread = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        LoginRateLimiter limiter = new LoginRateLimiter(600, 1_000_000, 600, 1_000_000, 100_000, System::nanoTime);
+
+        measure(limiter, threads, perThread); // warm-up
+        double single = measure(limiter, 1, perThread);
+        double parallel = measure(limiter, threads, perThread);
+        System.out.printf("LoginRateLimiter: 1 thread %.1f M ops/s, %d threads %.1f M ops/s (%.1fx)%n",
+                single / 1e6, threads, parallel / 1e6, parallel / single);
+        if (limiter.getRejectedByIp() > 0) {
+            System.out.printf("Unexpected rejections: %d%n", limiter.getRejectedByIp());
+        }
+    }
+
+    private static double measure(LoginRateLimiter limiter, int threads, int perThread) throws Exception {
+        String[] keys = new String[threads * KEYS_PER_THREAD];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "10." + threads + "." + (i / 256) + "." + (i % 256);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                go.await();
+                for (int i = 0; i < perThread; i++) {
+                    limiter.tryAcquireForIp(keys[thread * KEYS_PER_THREAD + (i & (KEYS_PER_THREAD - 1))]);
+                }
+                return null;
+            }));
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        return (double) threads * perThread / (elapsed / 1e9);
+    }
+}
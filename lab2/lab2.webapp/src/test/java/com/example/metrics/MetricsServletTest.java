@@ -0,0 +1,33 @@
+package com.example.metrics;
+
+import com.example.model.User;
+import com.example.util.JwtUtil;
+import jakarta.servlet.http.HttpServletResponse;
+import junit.framework.TestCase;
+import org.bson.types.ObjectId;
+
+public class MetricsServletTest extends TestCase {
+
+    public void testRequiresAnAdminToken() {
+        assertEquals(HttpServletResponse.SC_UNAUTHORIZED, MetricsServlet.checkAccess("203.0.113.7", null, false));
+        assertEquals(HttpServletResponse.SC_UNAUTHORIZED,
+                MetricsServlet.checkAccess("203.0.113.7", "Bearer not-a-token", false));
+        assertEquals(HttpServletResponse.SC_FORBIDDEN,
+                MetricsServlet.checkAccess("203.0.113.7", bearer(User.Role.USER), false));
+        assertEquals(HttpServletResponse.SC_OK,
+                MetricsServlet.checkAccess("203.0.113.7", bearer(User.Role.ADMIN), false));
+    }
+
+    public void testLoopbackOnlyWhenAllowed() {
+        assertEquals(HttpServletResponse.SC_UNAUTHORIZED, MetricsServlet.checkAccess("127.0.0.1", null, false));
+        assertEquals(HttpServletResponse.SC_OK, MetricsServlet.checkAccess("127.0.0.1", null, true));
+        assertEquals(HttpServletResponse.SC_OK, MetricsServlet.checkAccess("0:0:0:0:0:0:0:1", null, true));
+        assertEquals(HttpServletResponse.SC_UNAUTHORIZED, MetricsServlet.checkAccess("203.0.113.7", null, true));
+    }
+
+    private static String bearer(User.Role role) {
+        User user = new User("metrics", "metrics@example.com", "hash", role);
+        user.setId(new ObjectId().toHexString());
+        return "Bearer " + JwtUtil.generateToken(user);
+    }
+}
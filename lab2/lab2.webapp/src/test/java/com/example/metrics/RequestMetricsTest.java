@@ -0,0 +1,63 @@
+package com.example.metrics;
+
+import com.example.metrics.RequestMetrics.Endpoint;
+import com.example.metrics.RequestMetrics.Phase;
+import junit.framework.TestCase;
+
+import java.util.concurrent.TimeUnit;
+
+public class RequestMetricsTest extends TestCase {
+
+    public void testRecordsRequestsPhasesAndStatuses() {
+        RequestMetrics metrics = new RequestMetrics();
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5);
+
+        metrics.recordRequest(Endpoint.LOGIN, 200, start);
+        metrics.recordRequest(Endpoint.LOGIN, 401, start);
+        metrics.recordPhase(Endpoint.LOGIN, Phase.HASH, start);
+
+        assertEquals(2, metrics.getRequestLatency(Endpoint.LOGIN).getCount());
+        assertEquals(1, metrics.getStatusCount(Endpoint.LOGIN, 401));
+        assertEquals(Long.valueOf(2), metrics.getRequestCounts().get("POST /users/login"));
+        assertEquals(Long.valueOf(1), metrics.getStatusCounts().get("POST /users/login 200"));
+        assertTrue(metrics.getP99Micros().get("POST /users/login hash") >= 5000);
+        assertFalse(metrics.getRequestCounts().containsKey("POST /users/register"));
+    }
+
+    public void testPrometheusOutputListsOnlyRecordedSeries() throws Exception {
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.recordRequest(Endpoint.REGISTER, 201, System.nanoTime());
+        metrics.recordPhase(Endpoint.REGISTER, Phase.DAO, System.nanoTime());
+
+        StringBuilder out = new StringBuilder();
+        metrics.writePrometheus(out);
+        String text = out.toString();
+
+        assertTrue(text.contains("lab2_http_responses_total{endpoint=\"POST /users/register\",status=\"201\"} 1\n"));
+        assertTrue(text.contains("lab2_http_request_micros_count{endpoint=\"POST /users/register\"} 1\n"));
+        assertTrue(text.contains("lab2_http_phase_micros_count{endpoint=\"POST /users/register\",phase=\"dao\"} 1\n"));
+        assertFalse(text.contains("phase=\"hash\""));
+    }
+
+    public void testAddedSourcesFollowInNameOrder() throws Exception {
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.addSource("b", out -> out.append("b 1\n"));
+        metrics.addSource("a", out -> out.append("a 1\n"));
+        metrics.addSource("c", out -> out.append("c 1\n"));
+        metrics.removeSource("c");
+
+        StringBuilder out = new StringBuilder();
+        metrics.writePrometheus(out);
+
+        assertTrue(out.toString().endsWith("a 1\nb 1\n"));
+    }
+
+    public void testReset() {
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.recordRequest(Endpoint.LIST_USERS, 200, System.nanoTime());
+        metrics.reset();
+
+        assertEquals(0, metrics.getStatusCount(Endpoint.LIST_USERS, 200));
+        assertTrue(metrics.getRequestCounts().isEmpty());
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.ratelimit;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LoginRateLimiterTest extends TestCase {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    public void testBurstThenRefill() {
+        TokenBucket bucket = new TokenBucket(SECOND, 3, 0);
+
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(SECOND, bucket.tryAcquire(0));
+
+        assertEquals(0, bucket.tryAcquire(SECOND));
+        assertTrue(bucket.tryAcquire(SECOND) > 0);
+        // Idle long enough to be full again, but never beyond the burst
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryAcquire(100 * SECOND));
+        }
+        assertTrue(bucket.tryAcquire(100 * SECOND) > 0);
+    }
+
+    public void testIpAndEmailAreLimitedSeparately() {
+        AtomicLong clock = new AtomicLong();
+        LoginRateLimiter limiter = new LoginRateLimiter(60, 2, 60, 1, 1000, clock::get);
+
+        assertEquals(0, limiter.tryAcquireForIp("10.0.0.1"));
+        assertEquals(0, limiter.tryAcquireForIp("10.0.0.1"));
+        assertTrue(limiter.tryAcquireForIp("10.0.0.1") > 0);
+        assertEquals(0, limiter.tryAcquireForIp("10.0.0.2"));
+
+        assertEquals(0, limiter.tryAcquireForEmail("alice@example.com"));
+        assertTrue(limiter.tryAcquireForEmail(" Alice@Example.com") > 0);
+
+        assertEquals(1, limiter.getRejectedByIp());
+        assertEquals(1, limiter.getRejectedByEmail());
+    }
+
+    public void testIdleKeysExpire() {
+        AtomicLong clock = new AtomicLong();
+        LoginRateLimiter limiter = new LoginRateLimiter(60, 5, 60, 5, 1000, clock::get);
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquireForIp("10.0.0." + i);
+        }
+        assertEquals(100, limiter.getTrackedKeys());
+
+        clock.addAndGet(6 * SECOND);
+        limiter.cleanUp();
+        assertEquals(0, limiter.getTrackedKeys());
+    }
+
+    public void testDisabledDimension() {
+        LoginRateLimiter limiter = new LoginRateLimiter(0, 0, 60, 1, 1000, System::nanoTime);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, limiter.tryAcquireForIp("10.0.0.1"));
+        }
+    }
+
+    /**
+     * Every core hammers the same bucket: exactly {@code burst} attempts may get through.
+     */
+    public void testConcurrentAcquireNeverOverAdmits() throws Exception {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int burst = 10_000;
+        TokenBucket bucket = new TokenBucket(TimeUnit.DAYS.toNanos(1), burst, System.nanoTime());
+        LongAdder admitted = new LongAdder();
+
+        runConcurrently(threads, thread -> {
+            for (int i = 0; i < burst; i++) {
+                if (bucket.tryAcquire(System.nanoTime()) == 0) {
+                    admitted.increment();
+                }
+            }
+        });
+
+        assertEquals(burst, admitted.sum());
+    }
+
+    private interface Worker {
+        void run(int thread);
+    }
+
+    private static void runConcurrently(int threads, Worker worker) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                worker.run(thread);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.servlets;
+
+import junit.framework.TestCase;
+
+import java.time.LocalDateTime;
+
+public class ETagsTest extends TestCase {
+    private static final LocalDateTime UPDATED = LocalDateTime.of(2025, 1, 1, 12, 0, 0, 123_000_000);
+
+    public void testTagFollowsUpdatedAt() {
+        String tag = ETags.of("42", UPDATED);
+
+        assertTrue(tag.startsWith("\"") && tag.endsWith("\""));
+        assertEquals(tag, ETags.of("42", UPDATED));
+        assertFalse(tag.equals(ETags.of("42", UPDATED.plusNanos(1_000_000))));
+        assertFalse(tag.equals(ETags.of("43", UPDATED)));
+    }
+
+    public void testIfNoneMatch() {
+        String tag = ETags.of("42", UPDATED);
+
+        assertTrue(ETags.matches(tag, tag));
+        assertTrue(ETags.matches("\"other\", " + tag, tag));
+        assertTrue(ETags.matches("W/" + tag, tag));
+        assertTrue(ETags.matches("*", tag));
+        assertFalse(ETags.matches(null, tag));
+        assertFalse(ETags.matches("\"other\"", tag));
+    }
+}
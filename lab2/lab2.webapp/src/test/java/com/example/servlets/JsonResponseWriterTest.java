@@ -0,0 +1,55 @@
+package com.example.servlets;
+
+import com.example.model.User;
+import com.example.servlets.JsonResponseWriter.Body;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class JsonResponseWriterTest extends TestCase {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonResponseWriter jsonWriter = new JsonResponseWriter(objectMapper);
+
+    public void testPreencodedBody() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jsonWriter.write(out, Body.error("User not found"));
+
+        assertEquals("{\"error\":\"User not found\"}", out.toString(StandardCharsets.UTF_8));
+    }
+
+    public void testErrorMessageIsEscaped() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jsonWriter.writeError(out, "bad \"value\"\n\\ é");
+
+        JsonNode json = objectMapper.readTree(out.toByteArray());
+        assertEquals("bad \"value\"\n\\ é", json.get("error").asText());
+    }
+
+    public void testLoginPayload() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jsonWriter.writeLogin(out, "a.b.c", "refresh", 900, User.Role.ADMIN);
+
+        JsonNode json = objectMapper.readTree(out.toByteArray());
+        assertEquals("Login successful", json.get("message").asText());
+        assertEquals("a.b.c", json.get("token").asText());
+        assertEquals("refresh", json.get("refreshToken").asText());
+        assertEquals(900, json.get("expiresIn").asLong());
+        assertEquals("ADMIN", json.get("role").asText());
+    }
+
+    public void testWriterDoesNotCloseStream() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                fail("response stream closed");
+            }
+        };
+        jsonWriter.writeError(out, "first");
+        jsonWriter.writeError(out, "second");
+
+        assertEquals("{\"error\":\"first\"}{\"error\":\"second\"}", out.toString(StandardCharsets.UTF_8));
+    }
+}
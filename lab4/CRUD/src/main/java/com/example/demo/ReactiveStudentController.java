@@ -0,0 +1,199 @@
+package com.example.demo;
+
+import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.SortDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The {@code /api/students} API of {@link RedirectController} on WebFlux and the reactive
+ * Mongo driver, active with the {@code reactive} profile. Requests wait on the database
+ * without holding a thread. Adds {@code /changes}, a server-sent event stream of writes.
+ */
+@RestController
+@RequestMapping("/api/students")
+@Profile("reactive")
+public class ReactiveStudentController {
+    static final Duration HEARTBEAT = Duration.ofSeconds(15);
+
+    private final ReactiveStudentRepository repository;
+    private final StudentChangeFeed changeFeed;
+    private final StudentBatchProperties batchProperties;
+    private final StudentSearchProperties searchProperties;
+
+    public ReactiveStudentController(ReactiveStudentRepository repository, StudentChangeFeed changeFeed,
+                                     StudentBatchProperties batchProperties, StudentSearchProperties searchProperties) {
+        this.repository = repository;
+        this.changeFeed = changeFeed;
+        this.batchProperties = batchProperties;
+        this.searchProperties = searchProperties;
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<List<Student>>> getAllStudents(@RequestParam(required = false) String after,
+                                                              @RequestParam(defaultValue = "" + StudentApi.DEFAULT_PAGE_SIZE) int size,
+                                                              @SortDefault("id") Sort sort,
+                                                              ServerWebExchange exchange) {
+        StudentApi.PageQuery pageQuery;
+        try {
+            pageQuery = StudentApi.pageQuery(after, size, sort);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        // WebFlux answers 304 itself when If-None-Match carries the ETag set here
+        return repository.findPage(pageQuery.order(), pageQuery.after(), pageQuery.size()).map(page -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(StudentApi.pageETag(page));
+            if (page.next() != null) {
+                String next = UriComponentsBuilder.fromUri(exchange.getRequest().getURI())
+                        .replaceQueryParam("after", page.next().encode())
+                        .replaceQueryParam("sort")
+                        .toUriString();
+                response.header(HttpHeaders.LINK, StudentApi.nextLink(next));
+            }
+            return response.body(page.students());
+        });
+    }
+
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    public Flux<Student> streamStudents() {
+        return repository.findAllByOrderByIdAsc();
+    }
+
+    /**
+     * Writes made through this instance from the moment of subscription, one event per
+     * change named after its type. A comment goes out at once, so the response is committed
+     * before the first change, and then every {@link #HEARTBEAT} to keep idle connections
+     * from being closed by proxies.
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<StudentChange>> streamChanges() {
+        Flux<ServerSentEvent<StudentChange>> changes = changeFeed.changes()
+                .map(change -> ServerSentEvent.builder(change)
+                        .id(change.id().toHexString())
+                        .event(change.type().name().toLowerCase())
+                        .build());
+        Flux<ServerSentEvent<StudentChange>> heartbeat = Flux.interval(Duration.ZERO, HEARTBEAT)
+                .map(tick -> ServerSentEvent.<StudentChange>builder().comment("heartbeat").build());
+        return Flux.merge(changes, heartbeat);
+    }
+
+    @GetMapping("/search")
+    public Mono<ResponseEntity<List<Student>>> search(@RequestParam(required = false) String q,
+                                                      @RequestParam(defaultValue = "prefix") String mode,
+                                                      @RequestParam(defaultValue = "0") int page,
+                                                      @RequestParam(defaultValue = "" + StudentApi.DEFAULT_SEARCH_SIZE) int size,
+                                                      ServerWebExchange exchange) {
+        StudentApi.SearchQuery query;
+        try {
+            query = StudentApi.searchQuery(q, mode, page, size, searchProperties.textIndex());
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        return repository.searchByName(query.terms(), query.fullText(), query.page(), query.size()).map(result -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (result.hasMore()) {
+                String next = UriComponentsBuilder.fromUri(exchange.getRequest().getURI())
+                        .replaceQueryParam("page", page + 1)
+                        .toUriString();
+                response.header(HttpHeaders.LINK, StudentApi.nextLink(next));
+            }
+            return response.body(result.students());
+        });
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Student>> getStudent(@PathVariable String id) {
+        return repository.findById(new ObjectId(id))
+                .map(student -> ResponseEntity.ok().eTag(StudentApi.etag(student)).body(student))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<Student>> update(@PathVariable String id, @RequestBody Student student,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = student.getVersion() != null ? student.getVersion() : StudentApi.parseVersion(ifMatch);
+        return repository.updateStudent(new ObjectId(id), student, expectedVersion).map(result -> switch (result.outcome()) {
+            case UPDATED -> {
+                changeFeed.publish(StudentChange.updated(result.student()));
+                yield ResponseEntity.ok().eTag(StudentApi.etag(result.student())).body(result.student());
+            }
+            case NOT_FOUND -> ResponseEntity.notFound().build();
+            case CONFLICT -> ResponseEntity.status(HttpStatus.CONFLICT).build();
+        });
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Student>> addStudent(@RequestBody Student student) {
+        student.setId(null);
+        student.setVersion(null);
+        return repository.save(student).map(saved -> {
+            changeFeed.publish(StudentChange.created(saved));
+            return ResponseEntity.ok().eTag(StudentApi.etag(saved)).body(saved);
+        });
+    }
+
+    /**
+     * Same contract as {@link RedirectController#batch}; successful items are also pushed
+     * to {@code /changes}.
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    public Mono<ResponseEntity<List<StudentBatchResult>>> batch(@RequestBody Flux<StudentBatchItem> body) {
+        int maxItems = batchProperties.maxItems();
+        int size = batchProperties.size();
+        return body.take(maxItems + 1L).collectList().flatMap(items -> {
+            if (items.size() > maxItems) {
+                return Mono.just(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build());
+            }
+            return Flux.fromIterable(StudentApi.batchChunks(items, size))
+                    .concatMap(chunk -> repository.executeBatch(items.subList(chunk.from(), chunk.to()), chunk.from()))
+                    .flatMapIterable(results -> results)
+                    .collectList()
+                    .map(results -> {
+                        publishBatch(items, results);
+                        return ResponseEntity.ok(results);
+                    });
+        });
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<String>> deleteStudent(@PathVariable String id) {
+        ObjectId objectId = new ObjectId(id);
+        return repository.removeById(objectId).map(deleted -> {
+            if (deleted > 0) {
+                changeFeed.publish(StudentChange.deleted(objectId));
+                return ResponseEntity.ok("Student deleted successfully");
+            }
+            return ResponseEntity.notFound().<String>build();
+        });
+    }
+
+    private void publishBatch(List<StudentBatchItem> items, List<StudentBatchResult> results) {
+        for (StudentBatchResult result : results) {
+            if (result.status() >= 300) {
+                continue;
+            }
+            StudentBatchItem item = items.get(result.index());
+            ObjectId id = new ObjectId(result.id());
+            changeFeed.publish(switch (item.op()) {
+                case CREATE -> StudentChange.created(new Student(id, item.firstName(), item.lastName(), result.version()));
+                case UPDATE -> StudentChange.updated(new Student(id, item.firstName(), item.lastName(), result.version()));
+                case DELETE -> StudentChange.deleted(id);
+            });
+        }
+    }
+}
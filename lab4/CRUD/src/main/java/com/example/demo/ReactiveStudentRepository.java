@@ -0,0 +1,49 @@
+package com.example.demo;
+
+import org.bson.types.ObjectId;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.mongodb.repository.Meta;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking access to the students collection, used by the {@code reactive} profile.
+ * Caches the same way as {@link StudentRepository}; entries are put and evicted once the
+ * returned {@code Mono} completes.
+ */
+@Repository
+public interface ReactiveStudentRepository
+        extends ReactiveMongoRepository<Student, ObjectId>, ReactiveStudentRepositoryCustom {
+
+    @Override
+    @Cacheable(cacheNames = StudentCacheConfig.STUDENTS, key = "#p0", unless = "#result == null")
+    Mono<Student> findById(ObjectId id);
+
+    @Override
+    @CachePut(cacheNames = StudentCacheConfig.STUDENTS, key = "#result.id")
+    <S extends Student> Mono<S> save(S student);
+
+    @Override
+    @CacheEvict(cacheNames = StudentCacheConfig.STUDENTS, key = "#p0")
+    Mono<StudentRepositoryCustom.UpdateResult> updateStudent(ObjectId id, Student changes, Long expectedVersion);
+
+    @Override
+    @CacheEvict(cacheNames = StudentCacheConfig.STUDENTS, allEntries = true)
+    Mono<List<StudentBatchResult>> executeBatch(List<StudentBatchItem> items, int offset);
+
+    @CacheEvict(cacheNames = StudentCacheConfig.STUDENTS, key = "#p0")
+    Mono<Long> removeById(ObjectId id);
+
+    @Override
+    @CacheEvict(cacheNames = StudentCacheConfig.STUDENTS, key = "#p0")
+    Mono<Void> deleteById(ObjectId id);
+
+    @Meta(cursorBatchSize = 1000)
+    Flux<Student> findAllByOrderByIdAsc();
+}
@@ -0,0 +1,21 @@
+package com.example.demo;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Reactive counterpart of {@link StudentRepositoryCustom}, with the same semantics.
+ */
+public interface ReactiveStudentRepositoryCustom {
+
+    Mono<StudentRepositoryCustom.UpdateResult> updateStudent(ObjectId id, Student changes, Long expectedVersion);
+
+    Mono<StudentRepositoryCustom.StudentPage> findPage(Sort.Order order, StudentCursor after, int size);
+
+    Mono<StudentRepositoryCustom.SearchPage> searchByName(String terms, boolean fullText, int page, int size);
+
+    Mono<List<StudentBatchResult>> executeBatch(List<StudentBatchItem> items, int offset);
+}
@@ -0,0 +1,90 @@
+package com.example.demo;
+
+import com.example.demo.StudentRepositoryCustom.Outcome;
+import com.example.demo.StudentRepositoryCustom.SearchPage;
+import com.example.demo.StudentRepositoryCustom.StudentPage;
+import com.example.demo.StudentRepositoryCustom.UpdateResult;
+import com.mongodb.MongoBulkWriteException;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+class ReactiveStudentRepositoryCustomImpl implements ReactiveStudentRepositoryCustom {
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    ReactiveStudentRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<UpdateResult> updateStudent(ObjectId id, Student changes, Long expectedVersion) {
+        return mongoTemplate.findAndModify(StudentQueries.byIdAndVersion(id, expectedVersion),
+                        StudentQueries.replaceFields(changes), StudentQueries.RETURN_NEW, Student.class)
+                .map(UpdateResult::updated)
+                .switchIfEmpty(Mono.defer(() -> expectedVersion == null
+                        ? Mono.just(UpdateResult.failed(Outcome.NOT_FOUND))
+                        : mongoTemplate.exists(StudentQueries.byId(id), Student.class)
+                                .map(exists -> UpdateResult.failed(exists ? Outcome.CONFLICT : Outcome.NOT_FOUND))));
+    }
+
+    @Override
+    public Mono<StudentPage> findPage(Sort.Order order, StudentCursor after, int size) {
+        return mongoTemplate.find(StudentQueries.page(order, after, size), Student.class)
+                .collectList()
+                .map(students -> StudentQueries.toPage(students, order, size));
+    }
+
+    @Override
+    public Mono<SearchPage> searchByName(String terms, boolean fullText, int page, int size) {
+        Query query = fullText
+                ? StudentQueries.textSearch(terms, page, size)
+                : StudentQueries.prefixSearch(terms, page, size);
+        return mongoTemplate.find(query, Student.class)
+                .collectList()
+                .map(students -> StudentQueries.toSearchPage(students, size));
+    }
+
+    @Override
+    public Mono<List<StudentBatchResult>> executeBatch(List<StudentBatchItem> items, int offset) {
+        StudentBatch batch = new StudentBatch(items, offset);
+        return currentVersions(batch.idsToCheck()).flatMap(versions -> {
+            batch.plan(versions);
+            if (!batch.hasWrites()) {
+                return Mono.just(batch.results());
+            }
+
+            ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Student.class)
+                    .insert(batch.insertions())
+                    .remove(batch.removalQueries());
+            batch.updateOperations().forEach(update -> bulk.updateOne(update.getFirst(), update.getSecond()));
+            // Unlike the blocking template, the reactive one passes the driver's bulk exception through
+            return bulk.execute()
+                    .map(result -> batch.settle(result, List.of()))
+                    .onErrorResume(MongoBulkWriteException.class,
+                            e -> Mono.just(batch.settle(e.getWriteResult(), e.getWriteErrors())))
+                    .flatMap(open -> open.isEmpty()
+                            ? Mono.just(batch.results())
+                            : currentVersions(open).map(current -> {
+                                batch.confirm(current);
+                                return batch.results();
+                            }));
+        });
+    }
+
+    private Mono<Map<ObjectId, Long>> currentVersions(Collection<ObjectId> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return mongoTemplate.find(StudentQueries.versionsOf(ids), Student.class)
+                .collectList()
+                .map(StudentBatch::versionsOf);
+    }
+}
@@ -1,56 +1,206 @@
 package com.example.demo;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.SortDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/students")
+@Profile("!reactive")
 public class RedirectController {
     private final StudentRepository repository;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter studentWriter;
+    private final ObjectReader batchReader;
+    private final StudentBatchProperties batchProperties;
+    private final StudentSearchProperties searchProperties;
 
-    public RedirectController(StudentRepository studentRepository) {
+    public RedirectController(StudentRepository studentRepository, ObjectMapper objectMapper,
+                              StudentBatchProperties batchProperties, StudentSearchProperties searchProperties) {
         this.repository = studentRepository;
+        this.objectMapper = objectMapper;
+        this.batchReader = objectMapper.readerFor(StudentBatchItem.class);
+        this.batchProperties = batchProperties;
+        this.searchProperties = searchProperties;
+        // Flushing is left to the generator's buffer instead of once per student
+        this.studentWriter = objectMapper.writerFor(Student.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
+    /**
+     * One page of students, sorted by a single field ({@code sort=lastName,desc}) with the
+     * id as tie-breaker. When more follow, a {@code Link: <...>; rel="next"} header carries
+     * the cursor for the next page; the cursor keeps the sort it was issued under.
+     */
     @GetMapping
-    public List<Student> getAllStudents() {
-        return repository.findAll();
+    public ResponseEntity<List<Student>> getAllStudents(@RequestParam(required = false) String after,
+                                                        @RequestParam(defaultValue = "" + StudentApi.DEFAULT_PAGE_SIZE) int size,
+                                                        @SortDefault("id") Sort sort,
+                                                        WebRequest request) {
+        StudentApi.PageQuery pageQuery;
+        try {
+            pageQuery = StudentApi.pageQuery(after, size, sort);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StudentRepositoryCustom.StudentPage page =
+                repository.findPage(pageQuery.order(), pageQuery.after(), pageQuery.size());
+        String etag = StudentApi.pageETag(page);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag);
+        if (page.next() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", page.next().encode())
+                    .replaceQueryParam("sort")
+                    .toUriString();
+            response.header(HttpHeaders.LINK, StudentApi.nextLink(next));
+        }
+        return response.body(page.students());
+    }
+
+    /**
+     * Every student as newline-delimited JSON, written while the database cursor is read,
+     * so memory use does not grow with the collection and the first bytes go out as soon
+     * as the first batch arrives.
+     */
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamStudents() {
+        StreamingResponseBody body = out -> {
+            try (Stream<Student> students = repository.streamAllByOrderByIdAsc();
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                Iterator<Student> iterator = students.iterator();
+                while (iterator.hasNext()) {
+                    studentWriter.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(StudentApi.NDJSON).body(body);
     }
 
+    /**
+     * Students by name for typeahead, {@code size} at a time: {@code q=lov} finds last names
+     * starting with "lov" in any case, {@code q=lovelace a} narrows to first names starting
+     * with "a", and {@code mode=text} runs a full-text search when the text index is enabled.
+     * A {@code Link: <...>; rel="next"} header points to the following page.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<Student>> search(@RequestParam(required = false) String q,
+                                                @RequestParam(defaultValue = "prefix") String mode,
+                                                @RequestParam(defaultValue = "0") int page,
+                                                @RequestParam(defaultValue = "" + StudentApi.DEFAULT_SEARCH_SIZE) int size) {
+        StudentApi.SearchQuery query;
+        try {
+            query = StudentApi.searchQuery(q, mode, page, size, searchProperties.textIndex());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StudentRepositoryCustom.SearchPage result =
+                repository.searchByName(query.terms(), query.fullText(), query.page(), query.size());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (result.hasMore()) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("page", page + 1)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, StudentApi.nextLink(next));
+        }
+        return response.body(result.students());
+    }
+
+    /**
+     * Returns 304 when {@code If-None-Match} carries the student's current version.
+     */
     @GetMapping("/{id}")
     public ResponseEntity<Student> getStudent(@PathVariable String id) {
         return repository.findById(new ObjectId(id))
-                .map(ResponseEntity::ok)
+                .map(student -> ResponseEntity.ok().eTag(StudentApi.etag(student)).body(student))
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * A single conditional write: the version comes from the body or an {@code If-Match}
+     * header, and a stale one yields 409. Without either the update is last-write-wins.
+     */
     @PutMapping("/{id}")
-    public ResponseEntity<Student> update(@PathVariable String id, @RequestBody Student student) {
-        return repository.findById(new ObjectId(id))
-                .map(existingStudent -> {
-                        student.setId(new ObjectId(id));
-                        Student updatedStudent = repository.save(student);
-                return ResponseEntity.ok(updatedStudent);
-                })
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<Student> update(@PathVariable String id, @RequestBody Student student,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = student.getVersion() != null ? student.getVersion() : StudentApi.parseVersion(ifMatch);
+        StudentRepositoryCustom.UpdateResult result = repository.updateStudent(new ObjectId(id), student, expectedVersion);
+        return switch (result.outcome()) {
+            case UPDATED -> ResponseEntity.ok().eTag(StudentApi.etag(result.student())).body(result.student());
+            case NOT_FOUND -> ResponseEntity.notFound().build();
+            case CONFLICT -> ResponseEntity.status(HttpStatus.CONFLICT).build();
+        };
     }
 
     @PostMapping
     public ResponseEntity<Student> addStudent(@RequestBody Student student) {
         student.setId(null);
-        return ResponseEntity.ok(repository.save(student));
+        student.setVersion(null);
+        Student saved = repository.save(student);
+        return ResponseEntity.ok().eTag(StudentApi.etag(saved)).body(saved);
+    }
+
+    /**
+     * Creates, updates and deletes many students in one request: a JSON array or
+     * newline-delimited JSON of {@link StudentBatchItem}s, written in unordered bulk writes
+     * of {@code students.batch.size}. Items naming the same student apply in request order.
+     * Answers 200 with one {@link StudentBatchResult} per item in request order; items are
+     * independent and a failing one does not stop the rest. More than {@code students.batch.max-items} items are refused with 413 before
+     * anything is written.
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    public ResponseEntity<List<StudentBatchResult>> batch(InputStream body) throws IOException {
+        List<StudentBatchItem> items = new ArrayList<>();
+        // Reads a top-level array element by element just like a sequence of NDJSON lines
+        try (MappingIterator<StudentBatchItem> iterator = batchReader.readValues(body)) {
+            while (iterator.hasNextValue()) {
+                if (items.size() == batchProperties.maxItems()) {
+                    return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+                }
+                items.add(iterator.nextValue());
+            }
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<StudentBatchResult> results = new ArrayList<>(items.size());
+        for (StudentApi.BatchChunk chunk : StudentApi.batchChunks(items, batchProperties.size())) {
+            results.addAll(repository.executeBatch(items.subList(chunk.from(), chunk.to()), chunk.from()));
+        }
+        return ResponseEntity.ok(results);
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<String> deleteStudent(@PathVariable String id) {
-        ObjectId objectId = new ObjectId(id);
-
-        if(repository.existsById(objectId)) {
-            repository.deleteById(objectId);
+        if (repository.removeById(new ObjectId(id)) > 0) {
             return ResponseEntity.ok("Student deleted successfully");
         }
         return ResponseEntity.notFound().build();
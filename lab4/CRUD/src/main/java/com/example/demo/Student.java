@@ -1,11 +1,14 @@
 package com.example.demo;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 
 @Data
 @NoArgsConstructor
@@ -14,9 +17,14 @@ import org.springframework.data.annotation.Id;
 public class Student {
     @Id
     @EqualsAndHashCode.Include
+    // As the hex string used in /api/students/{id}, not ObjectId's bean properties
+    @JsonSerialize(using = ToStringSerializer.class)
     private ObjectId id;
     private String firstName;
     private String lastName;
+    // Optimistic-locking version, bumped by Spring Data on every save; also the ETag
+    @Version
+    private Long version;
 
 
 }
@@ -0,0 +1,144 @@
+package com.example.demo;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The parts of the {@code /api/students} contract that do not depend on the web stack:
+ * paging and search limits, ETags and version parsing. Shared by {@link RedirectController} and
+ * {@link ReactiveStudentController} so both answer identically.
+ */
+final class StudentApi {
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 1000;
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    static final int DEFAULT_SEARCH_SIZE = 10;
+    // Search pages by offset, so only its first pages are served; typeahead never goes deeper
+    static final int MAX_SEARCH_WINDOW = 1000;
+    private static final Set<String> SORTABLE = Set.of("id", "firstName", "lastName");
+
+    private StudentApi() {
+    }
+
+    record PageQuery(Sort.Order order, StudentCursor after, int size) {
+    }
+
+    /**
+     * A cursor, when present, decides the sort, so a follow-up request keeps the order of
+     * the page it continues.
+     *
+     * @throws IllegalArgumentException on a bad size, sort or cursor
+     */
+    static PageQuery pageQuery(String after, int size, Sort sort) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        StudentCursor cursor = after == null ? null : StudentCursor.decode(after);
+        Sort.Order order = cursor != null ? cursor.order() : sort.iterator().next();
+        if (sort.stream().count() > 1 || !SORTABLE.contains(order.getProperty())) {
+            throw new IllegalArgumentException("Students sort by one of " + SORTABLE);
+        }
+        return new PageQuery(order, cursor, size);
+    }
+
+    record SearchQuery(String terms, boolean fullText, int page, int size) {
+    }
+
+    /**
+     * @param mode {@code prefix} or, when the text index is enabled, {@code text}
+     * @throws IllegalArgumentException on blank terms, an unknown or disabled mode, or a
+     *                                  page beyond {@link #MAX_SEARCH_WINDOW}
+     */
+    static SearchQuery searchQuery(String q, String mode, int page, int size, boolean textEnabled) {
+        if (q == null || q.isBlank()) {
+            throw new IllegalArgumentException("q is required");
+        }
+        boolean fullText = switch (mode) {
+            case "prefix" -> false;
+            case "text" -> {
+                if (!textEnabled) {
+                    throw new IllegalArgumentException("Text search is not enabled");
+                }
+                yield true;
+            }
+            default -> throw new IllegalArgumentException("mode must be prefix or text");
+        };
+        if (size < 1 || page < 0 || ((long) page + 1) * size > MAX_SEARCH_WINDOW) {
+            throw new IllegalArgumentException("Search returns at most the first " + MAX_SEARCH_WINDOW + " results");
+        }
+        return new SearchQuery(q.trim(), fullText, page, size);
+    }
+
+    record BatchChunk(int from, int to) {
+    }
+
+    /**
+     * Splits a batch request into bulk writes of at most {@code size} items, also starting a
+     * new one where a student's id comes up again: operations within one unordered bulk
+     * write are not applied in request order, so repeats of an id run one write later.
+     */
+    static List<BatchChunk> batchChunks(List<StudentBatchItem> items, int size) {
+        List<BatchChunk> chunks = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        int from = 0;
+        for (int i = 0; i < items.size(); i++) {
+            StudentBatchItem item = items.get(i);
+            String id = item == null || item.id() == null ? null : item.id().toLowerCase(Locale.ROOT);
+            if (i - from == size || (id != null && !ids.add(id))) {
+                chunks.add(new BatchChunk(from, i));
+                from = i;
+                ids.clear();
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+        }
+        if (from < items.size()) {
+            chunks.add(new BatchChunk(from, items.size()));
+        }
+        return chunks;
+    }
+
+    static String nextLink(String uri) {
+        return "<" + uri + ">; rel=\"next\"";
+    }
+
+    static String etag(Student student) {
+        return "\"" + student.getVersion() + "\"";
+    }
+
+    static String pageETag(StudentRepositoryCustom.StudentPage page) {
+        long hash = 1;
+        for (Student student : page.students()) {
+            hash = 31 * hash + student.getId().hashCode();
+            hash = 31 * hash + Objects.hashCode(student.getVersion());
+        }
+        // A last page turns into a middle one when students are appended behind it
+        hash = 31 * hash + (page.next() == null ? 0 : 1);
+        return "\"" + page.students().size() + "-" + Long.toHexString(hash) + "\"";
+    }
+
+    static Long parseVersion(String ifMatch) {
+        if (ifMatch == null) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        value = value.replace("\"", "");
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            // "*" or an ETag from elsewhere (e.g. a page) does not name a version
+            return null;
+        }
+    }
+}
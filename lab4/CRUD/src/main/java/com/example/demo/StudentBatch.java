@@ -0,0 +1,237 @@
+package com.example.demo;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One chunk of a batch request, settled around a single unordered bulk write.
+ * <p>
+ * A bulk write only reports how many updates matched in total, so the per-item outcome
+ * is worked out around it: {@link #plan} takes the current versions of every student the
+ * chunk touches (one {@code $in} read) and answers 404 and 409 up front, and
+ * {@link #settle} attributes the result. Only if some update did not match after all —
+ * a concurrent write in between — does {@link #confirm} need a second read. Shared by the
+ * blocking and the reactive repository, which only differ in how they run the queries.
+ */
+final class StudentBatch {
+    private final List<StudentBatchItem> items;
+    private final int offset;
+    private final ObjectId[] ids;
+    private final StudentBatchResult[] results;
+    private final Map<ObjectId, Long> versionsBefore = new HashMap<>();
+
+    // Positions in items, in the order their operations are added to the bulk write
+    private final List<Integer> inserts = new ArrayList<>();
+    private final List<Integer> updates = new ArrayList<>();
+    private final List<Integer> removals = new ArrayList<>();
+
+    /**
+     * @param offset position of the first item in the whole request, used for result indices
+     */
+    StudentBatch(List<StudentBatchItem> items, int offset) {
+        this.items = items;
+        this.offset = offset;
+        this.ids = new ObjectId[items.size()];
+        this.results = new StudentBatchResult[items.size()];
+        Set<ObjectId> seen = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            StudentBatchItem item = items.get(i);
+            if (item == null || item.op() == null) {
+                results[i] = StudentBatchResult.failed(offset + i, 400, null, "op must be create, update or delete");
+            } else if (item.op() == StudentBatchItem.Op.CREATE) {
+                // Assigned here, so a created student's id is known without reading it back
+                ids[i] = new ObjectId();
+            } else if (item.id() == null || !ObjectId.isValid(item.id())) {
+                results[i] = StudentBatchResult.failed(offset + i, 400, item.id(), "A valid id is required");
+            } else if (!seen.add(new ObjectId(item.id()))) {
+                // Both writes would be settled against the same version read; see StudentApi.batchChunks
+                results[i] = StudentBatchResult.failed(offset + i, 400, item.id(), "Student appears more than once in this bulk write");
+            } else {
+                ids[i] = new ObjectId(item.id());
+            }
+        }
+    }
+
+    /**
+     * The students whose current version decides whether an update or delete applies.
+     */
+    Set<ObjectId> idsToCheck() {
+        Set<ObjectId> check = new LinkedHashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (results[i] == null && items.get(i).op() != StudentBatchItem.Op.CREATE) {
+                check.add(ids[i]);
+            }
+        }
+        return check;
+    }
+
+    /**
+     * @param versions current version by id for {@link #idsToCheck()}; absent ids no longer
+     *                 exist, a {@code null} value is a student stored before versioning
+     */
+    void plan(Map<ObjectId, Long> versions) {
+        versionsBefore.putAll(versions);
+        for (int i = 0; i < items.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            StudentBatchItem item = items.get(i);
+            if (item.op() == StudentBatchItem.Op.CREATE) {
+                inserts.add(i);
+            } else if (!versions.containsKey(ids[i])) {
+                results[i] = StudentBatchResult.failed(offset + i, 404, item.id(), "Student not found");
+            } else if (item.op() == StudentBatchItem.Op.DELETE) {
+                removals.add(i);
+            } else if (item.version() != null && !item.version().equals(versions.get(ids[i]))) {
+                results[i] = StudentBatchResult.failed(offset + i, 409, item.id(), "Student was modified concurrently");
+            } else {
+                updates.add(i);
+            }
+        }
+    }
+
+    boolean hasWrites() {
+        return !inserts.isEmpty() || !updates.isEmpty() || !removals.isEmpty();
+    }
+
+    // The three lists below must be added to the bulk write in this order
+
+    List<Student> insertions() {
+        List<Student> students = new ArrayList<>(inserts.size());
+        for (int i : inserts) {
+            StudentBatchItem item = items.get(i);
+            students.add(new Student(ids[i], item.firstName(), item.lastName(), 0L));
+        }
+        return students;
+    }
+
+    List<Pair<Query, UpdateDefinition>> updateOperations() {
+        List<Pair<Query, UpdateDefinition>> operations = new ArrayList<>(updates.size());
+        for (int i : updates) {
+            StudentBatchItem item = items.get(i);
+            Student changes = new Student(ids[i], item.firstName(), item.lastName(), null);
+            // A versioned item stays conditional on the version checked in plan(), so a write
+            // in between still turns into 409; without one the last write wins, as with PUT
+            Query query = item.version() != null
+                    ? StudentQueries.byIdAndVersion(ids[i], versionsBefore.get(ids[i]))
+                    : StudentQueries.byId(ids[i]);
+            operations.add(Pair.of(query, StudentQueries.replaceFields(changes)));
+        }
+        return operations;
+    }
+
+    List<Query> removalQueries() {
+        List<Query> queries = new ArrayList<>(removals.size());
+        for (int i : removals) {
+            queries.add(StudentQueries.byId(ids[i]));
+        }
+        return queries;
+    }
+
+    /**
+     * Attributes the bulk write's outcome.
+     *
+     * @param errors per-operation failures, indexed by position in the bulk write
+     * @return ids of updates whose outcome is still open, to be re-read for {@link #confirm}
+     */
+    Set<ObjectId> settle(BulkWriteResult result, List<BulkWriteError> errors) {
+        List<Integer> bulkOrder = new ArrayList<>(inserts);
+        bulkOrder.addAll(updates);
+        bulkOrder.addAll(removals);
+        int failedUpdates = 0;
+        for (BulkWriteError error : errors) {
+            int i = bulkOrder.get(error.getIndex());
+            results[i] = StudentBatchResult.failed(offset + i, 500, idOf(i), error.getMessage());
+            if (items.get(i).op() == StudentBatchItem.Op.UPDATE) {
+                failedUpdates++;
+            }
+        }
+
+        for (int i : inserts) {
+            if (results[i] == null) {
+                results[i] = StudentBatchResult.ok(offset + i, 201, ids[i].toHexString(), 0L);
+            }
+        }
+        for (int i : removals) {
+            // Gone either way; a concurrent delete of the same student still leaves it deleted
+            if (results[i] == null) {
+                results[i] = StudentBatchResult.ok(offset + i, 200, items.get(i).id(), null);
+            }
+        }
+
+        boolean allMatched = result != null && result.getMatchedCount() == updates.size() - failedUpdates;
+        Set<ObjectId> open = new LinkedHashSet<>();
+        for (int i : updates) {
+            if (results[i] != null) {
+                continue;
+            }
+            if (allMatched) {
+                results[i] = StudentBatchResult.ok(offset + i, 200, items.get(i).id(), nextVersion(versionsBefore.get(ids[i])));
+            } else {
+                open.add(ids[i]);
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Settles the updates {@link #settle} left open. A versioned one applied if the student
+     * is now at the version it would have after the update; an unconditional one matched
+     * unless the student was deleted, and reports the version it has now.
+     */
+    void confirm(Map<ObjectId, Long> versions) {
+        for (int i : updates) {
+            if (results[i] != null) {
+                continue;
+            }
+            String id = items.get(i).id();
+            Long expected = nextVersion(versionsBefore.get(ids[i]));
+            if (!versions.containsKey(ids[i])) {
+                results[i] = StudentBatchResult.failed(offset + i, 404, id, "Student not found");
+            } else if (items.get(i).version() == null) {
+                results[i] = StudentBatchResult.ok(offset + i, 200, id, versions.get(ids[i]));
+            } else if (expected.equals(versions.get(ids[i]))) {
+                results[i] = StudentBatchResult.ok(offset + i, 200, id, expected);
+            } else {
+                results[i] = StudentBatchResult.failed(offset + i, 409, id, "Student was modified concurrently");
+            }
+        }
+    }
+
+    List<StudentBatchResult> results() {
+        return List.of(results);
+    }
+
+    /**
+     * Versions as a map for {@link #plan} and {@link #confirm}, keeping students without one.
+     */
+    static Map<ObjectId, Long> versionsOf(Collection<Student> students) {
+        Map<ObjectId, Long> versions = new HashMap<>();
+        for (Student student : students) {
+            versions.put(student.getId(), student.getVersion());
+        }
+        return versions;
+    }
+
+    private String idOf(int i) {
+        return ids[i] == null ? null : ids[i].toHexString();
+    }
+
+    // $inc on a missing field starts from 0
+    private static Long nextVersion(Long version) {
+        return version == null ? 1L : version + 1;
+    }
+}
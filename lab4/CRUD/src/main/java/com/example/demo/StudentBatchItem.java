@@ -0,0 +1,37 @@
+package com.example.demo;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Locale;
+
+/**
+ * One operation of a {@code POST /api/students/batch} request. {@code id} is required for
+ * updates and deletes; {@code version}, when given, makes an update conditional exactly
+ * like {@code If-Match} on {@code PUT /api/students/{id}}.
+ */
+public record StudentBatchItem(Op op, String id, Long version, String firstName, String lastName) {
+
+    public enum Op {
+        CREATE, UPDATE, DELETE;
+
+        /**
+         * An unknown op reads as {@code null}, so it fails that item with 400 instead of the
+         * whole request.
+         */
+        @JsonCreator
+        static Op of(String value) {
+            for (Op op : values()) {
+                if (op.name().equalsIgnoreCase(value)) {
+                    return op;
+                }
+            }
+            return null;
+        }
+
+        @JsonValue
+        String value() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
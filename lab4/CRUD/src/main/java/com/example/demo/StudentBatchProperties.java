@@ -0,0 +1,15 @@
+package com.example.demo;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Limits for {@code POST /api/students/batch}.
+ *
+ * @param size     operations sent to MongoDB per bulk write
+ * @param maxItems operations accepted per request; larger requests are rejected with 413
+ *                 before anything is written
+ */
+@ConfigurationProperties("students.batch")
+public record StudentBatchProperties(@DefaultValue("500") int size, @DefaultValue("10000") int maxItems) {
+}
@@ -0,0 +1,20 @@
+package com.example.demo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of the item at {@code index} of a batch request, with the HTTP status the
+ * matching single-student endpoint would have answered: 201 for a create, 200 for an
+ * update or delete, 400, 404, 409, or 500 when the database rejected the write.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record StudentBatchResult(int index, int status, String id, Long version, String error) {
+
+    static StudentBatchResult ok(int index, int status, String id, Long version) {
+        return new StudentBatchResult(index, status, id, version, null);
+    }
+
+    static StudentBatchResult failed(int index, int status, String id, String error) {
+        return new StudentBatchResult(index, status, id, null, error);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo;
+
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Second-level cache of single students by id, declared on both repositories:
+ * {@code findById} fills it, and every write through them replaces or evicts the entry.
+ * <p>
+ * The provider comes from {@code spring.cache.*}, by default a bounded Caffeine cache in
+ * each instance. Writes made by other instances are not seen there, so the TTL bounds how
+ * stale an entry can get, and a rejected conditional update evicts its student so the
+ * client's re-read is fresh. For a cache shared across instances set
+ * {@code spring.cache.type} to {@code redis}, {@code hazelcast} or {@code jcache} with that
+ * provider on the classpath; the annotations stay as they are.
+ */
+@Configuration
+@EnableCaching
+public class StudentCacheConfig {
+    public static final String STUDENTS = "students";
+
+    /**
+     * The reactive repository caches the values of {@code Mono}s, which Caffeine only
+     * supports in async mode; synchronous lookups work the same either way.
+     */
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> asyncCaffeineCacheManager() {
+        return cacheManager -> cacheManager.setAsyncCacheMode(true);
+    }
+}
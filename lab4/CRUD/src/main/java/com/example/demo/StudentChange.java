@@ -0,0 +1,24 @@
+package com.example.demo;
+
+import org.bson.types.ObjectId;
+
+/**
+ * A write to the students collection as pushed to {@code /api/students/changes}
+ * subscribers; {@code student} is the stored state, or {@code null} after a delete.
+ */
+public record StudentChange(Type type, ObjectId id, Student student) {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    static StudentChange created(Student student) {
+        return new StudentChange(Type.CREATED, student.getId(), student);
+    }
+
+    static StudentChange updated(Student student) {
+        return new StudentChange(Type.UPDATED, student.getId(), student);
+    }
+
+    static StudentChange deleted(ObjectId id) {
+        return new StudentChange(Type.DELETED, id, null);
+    }
+}
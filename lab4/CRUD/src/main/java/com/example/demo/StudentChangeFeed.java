@@ -0,0 +1,39 @@
+package com.example.demo;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+
+/**
+ * Fans out the writes made through this instance to every open change stream.
+ * <p>
+ * MongoDB change streams would also see writes from other instances, but they need a
+ * replica set and lab4 runs against a standalone {@code mongod}, so the feed is fed by the
+ * controller after each successful write instead.
+ */
+@Component
+@Profile("reactive")
+public class StudentChangeFeed {
+    static final int SUBSCRIBER_BUFFER = 256;
+
+    private final Sinks.Many<StudentChange> sink = Sinks.many().multicast().directBestEffort();
+
+    public void publish(StudentChange change) {
+        // Writers on different event-loop threads may emit at once; retry briefly instead of failing
+        sink.emitNext(change, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+    }
+
+    /**
+     * Changes from the moment of subscription. A subscriber that falls more than
+     * {@value #SUBSCRIBER_BUFFER} changes behind loses the oldest ones rather than
+     * holding up writers or other subscribers.
+     */
+    public Flux<StudentChange> changes() {
+        return sink.asFlux().onBackpressureBuffer(SUBSCRIBER_BUFFER, change -> { },
+                BufferOverflowStrategy.DROP_OLDEST);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.demo;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position after the last student of a page: the sort it was taken under, that student's
+ * value of the sort field and its id as the tie-breaker. Handed to clients as an opaque,
+ * URL-safe token, so a follow-up request keeps the sort of the page it continues.
+ */
+public record StudentCursor(String field, Sort.Direction direction, String value, ObjectId id) {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public static StudentCursor after(Student student, Sort.Order order) {
+        String value = switch (order.getProperty()) {
+            case "firstName" -> student.getFirstName();
+            case "lastName" -> student.getLastName();
+            default -> null;
+        };
+        return new StudentCursor(order.getProperty(), order.getDirection(), value, student.getId());
+    }
+
+    public Sort.Order order() {
+        return new Sort.Order(direction, field);
+    }
+
+    public String encode() {
+        // A null sort value is not the same as an empty one, hence the marker before the value
+        String raw = field + ':' + direction.name() + ':' + id.toHexString() + ':'
+                + (value == null ? "n" : "s" + value);
+        return ENCODER.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    public static StudentCursor decode(String token) {
+        String raw = new String(DECODER.decode(token), StandardCharsets.UTF_8);
+        String[] parts = raw.split(":", 4);
+        if (parts.length != 4 || parts[3].isEmpty()) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        String value = parts[3].charAt(0) == 's' ? parts[3].substring(1) : null;
+        return new StudentCursor(parts[0], Sort.Direction.valueOf(parts[1]), value, new ObjectId(parts[2]));
+    }
+}
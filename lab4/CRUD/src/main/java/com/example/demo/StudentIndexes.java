@@ -0,0 +1,43 @@
+package com.example.demo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Creates the indexes name search and the sorted listing rely on. Spring Boot leaves
+ * automatic index creation off, and the name index needs a collation the mapping annotations would not make
+ * obvious, so they are declared in {@link StudentQueries} next to the queries using them.
+ */
+@Slf4j
+@Component
+public class StudentIndexes {
+    private final MongoTemplate mongoTemplate;
+    private final StudentSearchProperties searchProperties;
+
+    public StudentIndexes(MongoTemplate mongoTemplate, StudentSearchProperties searchProperties) {
+        this.mongoTemplate = mongoTemplate;
+        this.searchProperties = searchProperties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        // Off the startup thread, so an unreachable database does not hold up the context
+        CompletableFuture.runAsync(() -> {
+            IndexOperations indexes = mongoTemplate.indexOps(Student.class);
+            indexes.createIndex(StudentQueries.nameIndex());
+            StudentQueries.sortIndexes().forEach(indexes::createIndex);
+            if (searchProperties.textIndex()) {
+                indexes.createIndex(StudentQueries.textIndex());
+            }
+        }).exceptionally(e -> {
+            log.warn("Could not create student indexes", e);
+            return null;
+        });
+    }
+}
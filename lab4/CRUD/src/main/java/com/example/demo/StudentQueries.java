@@ -0,0 +1,190 @@
+package com.example.demo;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Queries and indexes shared by the blocking and the reactive student repositories, so
+ * both stacks page, search and update exactly the same way.
+ */
+final class StudentQueries {
+    static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    /**
+     * Case- and accent-insensitive English ordering. A query only uses an index built with
+     * the same collation, so the name index and the name search must both use this one.
+     */
+    static final Collation NAME_COLLATION = Collation.of(Locale.ENGLISH).strength(Collation.ComparisonLevel.secondary());
+    static final String NAME_INDEX = "lastName_firstName";
+    static final String TEXT_INDEX = "names_text";
+
+    // Sorts after every other character under ICU collation, closing a prefix range
+    private static final String PREFIX_END = "\uFFFF";
+
+    private StudentQueries() {
+    }
+
+    /**
+     * Matches the student, and only at {@code expectedVersion} when one is given.
+     */
+    static Query byIdAndVersion(ObjectId id, Long expectedVersion) {
+        Criteria criteria = where("_id").is(id);
+        if (expectedVersion != null) {
+            criteria = criteria.and("version").is(expectedVersion);
+        }
+        return query(criteria);
+    }
+
+    static Query byId(ObjectId id) {
+        return query(where("_id").is(id));
+    }
+
+    /**
+     * Just the id and version of each of {@code ids} that still exists.
+     */
+    static Query versionsOf(Collection<ObjectId> ids) {
+        Query query = query(where("_id").in(ids));
+        query.fields().include("version");
+        return query;
+    }
+
+    static Update replaceFields(Student changes) {
+        return new Update()
+                .set("firstName", changes.getFirstName())
+                .set("lastName", changes.getLastName())
+                .inc("version", 1);
+    }
+
+    /**
+     * Asks for one document more than the page holds; {@link #toPage} uses it to tell
+     * whether another page follows without a count.
+     */
+    static Query page(Sort.Order order, StudentCursor after, int size) {
+        boolean byId = "id".equals(order.getProperty());
+        Sort sort = byId
+                ? Sort.by(order.getDirection(), "id")
+                : Sort.by(order, new Sort.Order(order.getDirection(), "id"));
+        Query query = new Query().with(sort).limit(size + 1);
+        if (after != null) {
+            query.addCriteria(byId ? idBeyond(after) : keyBeyond(after));
+        }
+        return query;
+    }
+
+    static Index nameIndex() {
+        return new Index().on("lastName", Sort.Direction.ASC).on("firstName", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)
+                .named(NAME_INDEX).collation(NAME_COLLATION);
+    }
+
+    /**
+     * One {@code (field, _id)} index per sortable name, without a collation, matching the
+     * sort and range of {@link #page} so every page is an index range however deep it is.
+     * {@link #nameIndex()} cannot serve these: its collation differs, and the tie-breaker
+     * is not next to the last name.
+     */
+    static List<Index> sortIndexes() {
+        return List.of(
+                new Index().on("lastName", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named("lastName_id"),
+                new Index().on("firstName", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named("firstName_id"));
+    }
+
+    static TextIndexDefinition textIndex() {
+        return new TextIndexDefinition.TextIndexDefinitionBuilder()
+                .onField("lastName", 2F)
+                .onField("firstName")
+                .named(TEXT_INDEX)
+                .build();
+    }
+
+    /**
+     * Names starting with {@code terms}, ignoring case and accents: a single term is a last
+     * name prefix, and after a space the rest is a first name prefix for that exact last
+     * name ("lovelace a"). Both are ranges on {@link #nameIndex()} under its collation, so
+     * they read only matching index entries, already in result order. One document beyond
+     * the page tells whether another follows.
+     */
+    static Query prefixSearch(String terms, int page, int size) {
+        String[] parts = terms.trim().split("\\s+", 2);
+        Criteria criteria = parts.length == 1
+                ? where("lastName").gte(parts[0]).lt(parts[0] + PREFIX_END)
+                : where("lastName").is(parts[0]).and("firstName").gte(parts[1]).lt(parts[1] + PREFIX_END);
+        return new Query(criteria)
+                .with(Sort.by("lastName", "firstName", "id"))
+                .collation(NAME_COLLATION)
+                .skip((long) page * size)
+                .limit(size + 1);
+    }
+
+    /**
+     * Whole-word, stemmed matches on either name, best first. Needs {@link #textIndex()}.
+     */
+    static Query textSearch(String terms, int page, int size) {
+        return TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(terms))
+                .sortByScore()
+                .skip((long) page * size)
+                .limit(size + 1);
+    }
+
+    static StudentRepositoryCustom.SearchPage toSearchPage(List<Student> students, int size) {
+        return students.size() <= size
+                ? new StudentRepositoryCustom.SearchPage(students, false)
+                : new StudentRepositoryCustom.SearchPage(students.subList(0, size), true);
+    }
+
+    static StudentRepositoryCustom.StudentPage toPage(List<Student> students, Sort.Order order, int size) {
+        if (students.size() <= size) {
+            return new StudentRepositoryCustom.StudentPage(students, null);
+        }
+        List<Student> page = students.subList(0, size);
+        return new StudentRepositoryCustom.StudentPage(page, StudentCursor.after(page.get(size - 1), order));
+    }
+
+    private static Criteria idBeyond(StudentCursor after) {
+        return after.direction().isAscending()
+                ? where("_id").gt(after.id())
+                : where("_id").lt(after.id());
+    }
+
+    /**
+     * Documents strictly after {@code (value, id)} in the cursor's order. MongoDB sorts a
+     * null or missing field before every string, and a range operator on a string never
+     * matches null, so nulls need their own branches.
+     */
+    private static Criteria keyBeyond(StudentCursor after) {
+        String field = after.field();
+        String value = after.value();
+        if (after.direction().isAscending()) {
+            if (value == null) {
+                return new Criteria().orOperator(
+                        where(field).is(null).and("_id").gt(after.id()),
+                        where(field).ne(null));
+            }
+            return new Criteria().orOperator(
+                    where(field).gt(value),
+                    where(field).is(value).and("_id").gt(after.id()));
+        }
+        if (value == null) {
+            return where(field).is(null).and("_id").lt(after.id());
+        }
+        return new Criteria().orOperator(
+                where(field).lt(value),
+                where(field).is(value).and("_id").lt(after.id()),
+                where(field).is(null));
+    }
+}
@@ -1,12 +1,56 @@
 package com.example.demo;
 
 import org.bson.types.ObjectId;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+/**
+ * Single students are cached by id (see {@link StudentCacheConfig}); the writes declared
+ * here keep that cache current.
+ */
 @Repository
-public interface StudentRepository extends MongoRepository<Student, ObjectId> {
+public interface StudentRepository extends MongoRepository<Student, ObjectId>, StudentRepositoryCustom {
 
+    @Override
+    @Cacheable(cacheNames = StudentCacheConfig.STUDENTS, key = "#p0", unless = "#result == null")
+    Optional<Student> findById(ObjectId id);
+
+    @Override
+    @CachePut(cacheNames = StudentCacheConfig.STUDENTS, key = "#result.id")
+    <S extends Student> S save(S student);
+
+    @Override
+    @CacheEvict(cacheNames = StudentCacheConfig.STUDENTS, key = "#p0")
+    StudentRepositoryCustom.UpdateResult updateStudent(ObjectId id, Student changes, Long expectedVersion);
+
+    // A batch touches many students; dropping them all is cheaper than tracking which
+    @Override
+    @CacheEvict(cacheNames = StudentCacheConfig.STUDENTS, allEntries = true)
+    List<StudentBatchResult> executeBatch(List<StudentBatchItem> items, int offset);
+
+    /**
+     * A single {@code deleteOne}; returns the deleted count, so callers need no existence
+     * check first.
+     */
+    @CacheEvict(cacheNames = StudentCacheConfig.STUDENTS, key = "#p0")
+    long removeById(ObjectId id);
+
+    @Override
+    @CacheEvict(cacheNames = StudentCacheConfig.STUDENTS, key = "#p0")
+    void deleteById(ObjectId id);
+
+    /**
+     * Every student in id order, read through a cursor in batches rather than loaded as a
+     * list; the caller must close the stream.
+     */
+    @Meta(cursorBatchSize = 1000)
+    Stream<Student> streamAllByOrderByIdAsc();
 }
@@ -0,0 +1,62 @@
+package com.example.demo;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+/**
+ * Repository operations that need a single conditional write rather than a read followed
+ * by a save.
+ */
+public interface StudentRepositoryCustom {
+
+    /**
+     * Replaces the student's fields and bumps its version in one {@code findAndModify}.
+     * When {@code expectedVersion} is given the write only matches that version; without
+     * it the update is last-write-wins.
+     */
+    UpdateResult updateStudent(ObjectId id, Student changes, Long expectedVersion);
+
+    /**
+     * One page ordered by a single student field with the id as tie-breaker, continuing
+     * after {@code after} when given. Uses a range query on the sort key instead of
+     * {@code skip}, so every page costs the same however deep it is.
+     */
+    StudentPage findPage(Sort.Order order, StudentCursor after, int size);
+
+    /**
+     * One page of a name search, by prefix or, with {@code fullText}, through the text
+     * index.
+     */
+    SearchPage searchByName(String terms, boolean fullText, int page, int size);
+
+    record SearchPage(List<Student> students, boolean hasMore) {
+    }
+
+    /**
+     * Runs one chunk of a batch request as a single unordered bulk write, plus the reads
+     * {@link StudentBatch} needs to report every item's outcome.
+     *
+     * @param offset position of the chunk's first item in the whole request
+     */
+    List<StudentBatchResult> executeBatch(List<StudentBatchItem> items, int offset);
+
+    /**
+     * @param next where the following page starts, or {@code null} on the last page
+     */
+    record StudentPage(List<Student> students, StudentCursor next) {
+    }
+
+    enum Outcome { UPDATED, NOT_FOUND, CONFLICT }
+
+    record UpdateResult(Outcome outcome, Student student) {
+        static UpdateResult updated(Student student) {
+            return new UpdateResult(Outcome.UPDATED, student);
+        }
+
+        static UpdateResult failed(Outcome outcome) {
+            return new UpdateResult(outcome, null);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demo;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class StudentRepositoryCustomImpl implements StudentRepositoryCustom {
+    private final MongoTemplate mongoTemplate;
+
+    StudentRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public UpdateResult updateStudent(ObjectId id, Student changes, Long expectedVersion) {
+        Student updated = mongoTemplate.findAndModify(StudentQueries.byIdAndVersion(id, expectedVersion),
+                StudentQueries.replaceFields(changes), StudentQueries.RETURN_NEW, Student.class);
+        if (updated != null) {
+            return UpdateResult.updated(updated);
+        }
+        if (expectedVersion == null) {
+            return UpdateResult.failed(Outcome.NOT_FOUND);
+        }
+        // Only a failed versioned write needs a second look to tell a stale version from a missing student
+        boolean exists = mongoTemplate.exists(StudentQueries.byId(id), Student.class);
+        return UpdateResult.failed(exists ? Outcome.CONFLICT : Outcome.NOT_FOUND);
+    }
+
+    @Override
+    public StudentPage findPage(Sort.Order order, StudentCursor after, int size) {
+        return StudentQueries.toPage(
+                mongoTemplate.find(StudentQueries.page(order, after, size), Student.class), order, size);
+    }
+
+    @Override
+    public SearchPage searchByName(String terms, boolean fullText, int page, int size) {
+        Query query = fullText
+                ? StudentQueries.textSearch(terms, page, size)
+                : StudentQueries.prefixSearch(terms, page, size);
+        return StudentQueries.toSearchPage(mongoTemplate.find(query, Student.class), size);
+    }
+
+    @Override
+    public List<StudentBatchResult> executeBatch(List<StudentBatchItem> items, int offset) {
+        StudentBatch batch = new StudentBatch(items, offset);
+        batch.plan(currentVersions(batch.idsToCheck()));
+        if (!batch.hasWrites()) {
+            return batch.results();
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Student.class)
+                .insert(batch.insertions())
+                .updateOne(batch.updateOperations())
+                .remove(batch.removalQueries());
+        Set<ObjectId> open;
+        try {
+            open = batch.settle(bulk.execute(), List.of());
+        } catch (BulkOperationException e) {
+            open = batch.settle(e.getResult(), e.getErrors());
+        }
+        if (!open.isEmpty()) {
+            batch.confirm(currentVersions(open));
+        }
+        return batch.results();
+    }
+
+    private Map<ObjectId, Long> currentVersions(Collection<ObjectId> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return StudentBatch.versionsOf(mongoTemplate.find(StudentQueries.versionsOf(ids), Student.class));
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.demo;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for {@code GET /api/students/search}.
+ *
+ * @param textIndex whether to build the full-text index on both names and accept
+ *                  {@code mode=text}; off by default because every write to a name then
+ *                  also updates the text index
+ */
+@ConfigurationProperties("students.search")
+public record StudentSearchProperties(@DefaultValue("false") boolean textIndex) {
+}
@@ -0,0 +1,44 @@
+package com.example.demo;
+
+import com.mongodb.client.result.UpdateResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Gives students stored before {@link Student#getVersion()} existed a version of 0.
+ * Spring Data treats an entity with a null version as new, so saving one of those
+ * documents would attempt an insert and fail on the duplicate id.
+ */
+@Slf4j
+@Component
+public class StudentVersionBackfill {
+    private final MongoTemplate mongoTemplate;
+
+    public StudentVersionBackfill(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        // Off the startup thread, so an unreachable database does not hold up the context
+        CompletableFuture.runAsync(() -> {
+            UpdateResult result = mongoTemplate.updateMulti(
+                    query(where("version").exists(false)), new Update().set("version", 0L), Student.class);
+            if (result.getModifiedCount() > 0) {
+                log.info("Initialised version on {} students", result.getModifiedCount());
+            }
+        }).exceptionally(e -> {
+            log.warn("Could not backfill student versions", e);
+            return null;
+        });
+    }
+}
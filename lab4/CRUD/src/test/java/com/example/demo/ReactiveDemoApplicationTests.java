@@ -0,0 +1,24 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("reactive")
+class ReactiveDemoApplicationTests {
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Test
+	void contextLoadsWithoutServletStack() {
+		assertThat(context.getBeanNamesForType(ReactiveStudentController.class)).hasSize(1);
+		assertThat(context.getBeanNamesForType(RedirectController.class)).isEmpty();
+	}
+
+}
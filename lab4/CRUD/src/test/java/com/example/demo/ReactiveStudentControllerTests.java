@@ -0,0 +1,174 @@
+package com.example.demo;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = ReactiveStudentController.class,
+        properties = {"students.batch.size=2", "students.batch.max-items=3", "students.search.text-index=true"})
+@Import(StudentChangeFeed.class)
+@ActiveProfiles("reactive")
+class ReactiveStudentControllerTests {
+    private static final ObjectId ID = new ObjectId("65f0c0ffee0000000000abcd");
+
+    @Autowired
+    private WebTestClient client;
+
+    @MockitoBean
+    private ReactiveStudentRepository repository;
+
+    @Test
+    void getStudentAnswersNotModifiedForCurrentVersion() {
+        when(repository.findById(ID)).thenReturn(Mono.just(new Student(ID, "Ada", "Lovelace", 3L)));
+
+        client.get().uri("/api/students/{id}", ID.toHexString())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"3\"");
+        client.get().uri("/api/students/{id}", ID.toHexString())
+                .header("If-None-Match", "\"3\"")
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    void pageHasSameContractAsMvc() {
+        Student ada = new Student(ID, "Ada", "Lovelace", 3L);
+        StudentCursor next = StudentCursor.after(ada, Sort.Order.desc("lastName"));
+        when(repository.findPage(Sort.Order.desc("lastName"), null, 1))
+                .thenReturn(Mono.just(new StudentRepositoryCustom.StudentPage(List.of(ada), next)));
+
+        client.get().uri("/api/students?size=1&sort=lastName,desc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value("Link", link -> assertThat(link)
+                        .contains("after=" + next.encode()).doesNotContain("sort=").endsWith("rel=\"next\""))
+                .expectBody().jsonPath("$[0].lastName").isEqualTo("Lovelace");
+        client.get().uri("/api/students?sort=version")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void staleUpdateIsConflict() {
+        when(repository.updateStudent(eq(ID), any(), eq(2L)))
+                .thenReturn(Mono.just(StudentRepositoryCustom.UpdateResult.failed(StudentRepositoryCustom.Outcome.CONFLICT)));
+
+        client.put().uri("/api/students/{id}", ID.toHexString())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("If-Match", "\"2\"")
+                .bodyValue("{\"firstName\":\"Ada\",\"lastName\":\"Byron\"}")
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+
+    @Test
+    void streamsStudentsAsNdjson() {
+        when(repository.findAllByOrderByIdAsc()).thenReturn(Flux.just(
+                new Student(ID, "Ada", "Lovelace", 3L),
+                new Student(new ObjectId("65f0c0ffee0000000000abce"), "Alan", "Turing", 0L)));
+
+        String body = client.get().uri("/api/students/stream")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith("application/x-ndjson")
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        assertThat(body.split("\n")).hasSize(2);
+    }
+
+    @Test
+    void writesArePushedToChangeSubscribers() {
+        Student saved = new Student(ID, "Ada", "Lovelace", 0L);
+        when(repository.save(any(Student.class))).thenReturn(Mono.just(saved));
+        when(repository.removeById(ID)).thenReturn(Mono.just(1L));
+
+        Flux<ServerSentEvent<StudentChange>> events = client.get().uri("/api/students/changes")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<StudentChange>>() {
+                })
+                .getResponseBody()
+                .filter(event -> event.event() != null);
+
+        StepVerifier.create(events)
+                .then(() -> {
+                    client.post().uri("/api/students")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue("{\"firstName\":\"Ada\",\"lastName\":\"Lovelace\"}")
+                            .exchange()
+                            .expectStatus().isOk();
+                    client.delete().uri("/api/students/{id}", ID.toHexString())
+                            .exchange()
+                            .expectStatus().isOk();
+                })
+                .assertNext(event -> {
+                    assertThat(event.event()).isEqualTo("created");
+                    assertThat(event.data().student().getLastName()).isEqualTo("Lovelace");
+                })
+                .assertNext(event -> {
+                    assertThat(event.event()).isEqualTo("deleted");
+                    assertThat(event.id()).isEqualTo(ID.toHexString());
+                })
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void batchRunsInChunksAndRefusesOversizedRequests() {
+        when(repository.executeBatch(any(), eq(0))).thenReturn(Mono.just(List.of(
+                StudentBatchResult.ok(0, 201, "65f0c0ffee0000000000abc1", 0L),
+                StudentBatchResult.ok(1, 201, "65f0c0ffee0000000000abc2", 0L))));
+        when(repository.executeBatch(any(), eq(2))).thenReturn(Mono.just(List.of(
+                StudentBatchResult.failed(2, 404, ID.toHexString(), "Student not found"))));
+
+        client.post().uri("/api/students/batch")
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .bodyValue("""
+                        {"op":"create","lastName":"Hopper"}
+                        {"op":"create","lastName":"Liskov"}
+                        {"op":"delete","id":"65f0c0ffee0000000000abcd"}
+                        """)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[*].status").isEqualTo(List.of(201, 201, 404));
+
+        client.post().uri("/api/students/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"op\":\"create\"},{\"op\":\"create\"},{\"op\":\"create\"},{\"op\":\"create\"}]")
+                .exchange()
+                .expectStatus().isEqualTo(413);
+    }
+
+    @Test
+    void textSearchRunsWhenEnabled() {
+        when(repository.searchByName("lovelace", true, 0, StudentApi.DEFAULT_SEARCH_SIZE)).thenReturn(Mono.just(
+                new StudentRepositoryCustom.SearchPage(List.of(new Student(ID, "Ada", "Lovelace", 3L)), false)));
+
+        client.get().uri("/api/students/search?q=lovelace&mode=text")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist("Link")
+                .expectBody().jsonPath("$[0].id").isEqualTo(ID.toHexString());
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.demo;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = RedirectController.class,
+        properties = {"students.batch.size=2", "students.batch.max-items=3"})
+class RedirectControllerTests {
+    private static final ObjectId ID = new ObjectId("65f0c0ffee0000000000abcd");
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private StudentRepository repository;
+
+    @Test
+    void getStudentSendsVersionAsETag() throws Exception {
+        when(repository.findById(ID)).thenReturn(Optional.of(new Student(ID, "Ada", "Lovelace", 3L)));
+
+        mvc.perform(get("/api/students/{id}", ID.toHexString()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(jsonPath("$.id").value(ID.toHexString()))
+                .andExpect(jsonPath("$.lastName").value("Lovelace"));
+    }
+
+    @Test
+    void getStudentAnswersNotModifiedForCurrentVersion() throws Exception {
+        when(repository.findById(ID)).thenReturn(Optional.of(new Student(ID, "Ada", "Lovelace", 3L)));
+
+        mvc.perform(get("/api/students/{id}", ID.toHexString()).header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/api/students/{id}", ID.toHexString()).header("If-None-Match", "\"2\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void pageLinksToNextPageAndKeepsSort() throws Exception {
+        Student ada = new Student(ID, "Ada", "Lovelace", 3L);
+        StudentCursor next = StudentCursor.after(ada, Sort.Order.desc("lastName"));
+        when(repository.findPage(Sort.Order.desc("lastName"), null, 1))
+                .thenReturn(new StudentRepositoryCustom.StudentPage(List.of(ada), next));
+
+        String link = mvc.perform(get("/api/students").param("size", "1").param("sort", "lastName,desc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].lastName").value("Lovelace"))
+                .andReturn().getResponse().getHeader("Link");
+
+        assertThat(link).contains("after=" + next.encode()).doesNotContain("sort=").endsWith("rel=\"next\"");
+    }
+
+    @Test
+    void unchangedPageIsNotModified() throws Exception {
+        when(repository.findPage(Sort.Order.asc("id"), null, StudentApi.DEFAULT_PAGE_SIZE))
+                .thenReturn(new StudentRepositoryCustom.StudentPage(List.of(new Student(ID, "Ada", "Lovelace", 3L)), null));
+
+        String etag = mvc.perform(get("/api/students"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Link"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(get("/api/students").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void rejectsUnsortableFieldsAndOversizedPages() throws Exception {
+        mvc.perform(get("/api/students").param("sort", "version"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/students").param("size", String.valueOf(StudentApi.MAX_PAGE_SIZE + 1)))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/students").param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        verify(repository, never()).findPage(any(), any(), anyInt());
+    }
+
+    @Test
+    void streamWritesOneStudentPerLine() throws Exception {
+        when(repository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(
+                new Student(ID, "Ada", "Lovelace", 3L),
+                new Student(new ObjectId("65f0c0ffee0000000000abce"), "Alan", "Turing", 0L)));
+
+        MvcResult result = mvc.perform(get("/api/students/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"lastName\":\"Lovelace\"");
+        assertThat(lines[1]).contains("\"lastName\":\"Turing\"");
+        verify(repository, never()).findAll();
+    }
+
+    @Test
+    void cursorSurvivesEncoding() {
+        StudentCursor named = new StudentCursor("lastName", Sort.Direction.DESC, "O:Brien", ID);
+        StudentCursor unnamed = new StudentCursor("firstName", Sort.Direction.ASC, null, ID);
+
+        assertThat(StudentCursor.decode(named.encode())).isEqualTo(named);
+        assertThat(StudentCursor.decode(unnamed.encode())).isEqualTo(unnamed);
+    }
+
+    @Test
+    void updateWithStaleVersionIsConflict() throws Exception {
+        when(repository.updateStudent(eq(ID), any(), eq(2L)))
+                .thenReturn(StudentRepositoryCustom.UpdateResult.failed(StudentRepositoryCustom.Outcome.CONFLICT));
+
+        mvc.perform(put("/api/students/{id}", ID.toHexString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("If-Match", "\"2\"")
+                        .content("{\"firstName\":\"Ada\",\"lastName\":\"Byron\"}"))
+                .andExpect(status().isConflict());
+        verify(repository, never()).findById(any());
+    }
+
+    @Test
+    void updateReturnsNewVersion() throws Exception {
+        when(repository.updateStudent(eq(ID), any(), eq(3L)))
+                .thenReturn(StudentRepositoryCustom.UpdateResult.updated(new Student(ID, "Ada", "Byron", 4L)));
+
+        mvc.perform(put("/api/students/{id}", ID.toHexString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Ada\",\"lastName\":\"Byron\",\"version\":3}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""));
+    }
+
+    @Test
+    void deleteOfMissingStudentIsNotFound() throws Exception {
+        when(repository.removeById(ID)).thenReturn(0L);
+
+        mvc.perform(delete("/api/students/{id}", ID.toHexString()))
+                .andExpect(status().isNotFound());
+        verify(repository, never()).existsById(any());
+    }
+
+    @Test
+    void batchRunsInChunksAndKeepsRequestOrder() throws Exception {
+        when(repository.executeBatch(any(), eq(0))).thenReturn(List.of(
+                StudentBatchResult.ok(0, 201, "65f0c0ffee0000000000abc1", 0L),
+                StudentBatchResult.failed(1, 404, ID.toHexString(), "Student not found")));
+        when(repository.executeBatch(any(), eq(2))).thenReturn(List.of(
+                StudentBatchResult.failed(2, 400, null, "op must be create, update or delete")));
+
+        mvc.perform(post("/api/students/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"op":"create","firstName":"Grace","lastName":"Hopper"},
+                                 {"op":"delete","id":"65f0c0ffee0000000000abcd"},
+                                 {"op":"rename"}]"""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].status").value(contains(201, 404, 400)))
+                .andExpect(jsonPath("$[0].error").doesNotExist());
+
+        ArgumentCaptor<List<StudentBatchItem>> chunk = ArgumentCaptor.captor();
+        verify(repository).executeBatch(chunk.capture(), eq(2));
+        // An unknown op does not fail the request, only its own item
+        assertThat(chunk.getValue()).extracting(StudentBatchItem::op).containsExactly((StudentBatchItem.Op) null);
+    }
+
+    @Test
+    void batchWritesRepeatsOfAStudentInTurn() throws Exception {
+        when(repository.executeBatch(any(), anyInt())).thenReturn(List.of());
+
+        mvc.perform(post("/api/students/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"op":"update","id":"65f0c0ffee0000000000abcd","lastName":"Byron"},
+                                 {"op":"update","id":"65f0c0ffee0000000000abcd","lastName":"King"}]"""))
+                .andExpect(status().isOk());
+
+        verify(repository).executeBatch(any(), eq(0));
+        verify(repository).executeBatch(any(), eq(1));
+    }
+
+    @Test
+    void batchAcceptsNdjson() throws Exception {
+        when(repository.executeBatch(any(), eq(0))).thenReturn(List.of(
+                StudentBatchResult.ok(0, 201, "65f0c0ffee0000000000abc1", 0L),
+                StudentBatchResult.ok(1, 201, "65f0c0ffee0000000000abc2", 0L)));
+
+        mvc.perform(post("/api/students/batch")
+                        .contentType("application/x-ndjson")
+                        .content("{\"op\":\"create\",\"lastName\":\"Hopper\"}\n{\"op\":\"create\",\"lastName\":\"Liskov\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    void oversizedBatchIsRefusedBeforeWriting() throws Exception {
+        mvc.perform(post("/api/students/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"op\":\"create\"},{\"op\":\"create\"},{\"op\":\"create\"},{\"op\":\"create\"}]"))
+                .andExpect(status().isPayloadTooLarge());
+        verify(repository, never()).executeBatch(any(), anyInt());
+    }
+
+    @Test
+    void searchLinksToNextPage() throws Exception {
+        when(repository.searchByName("lov", false, 0, 1)).thenReturn(
+                new StudentRepositoryCustom.SearchPage(List.of(new Student(ID, "Ada", "Lovelace", 3L)), true));
+
+        mvc.perform(get("/api/students/search").param("q", " lov ").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].lastName").value("Lovelace"))
+                .andExpect(header().string("Link", containsString("page=1")));
+    }
+
+    @Test
+    void searchRejectsBlankDeepAndDisabledTextQueries() throws Exception {
+        mvc.perform(get("/api/students/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/students/search").param("q", "lov").param("page", "100"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/students/search").param("q", "lov").param("page", String.valueOf(Integer.MAX_VALUE)))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/students/search").param("q", "lovelace").param("mode", "text"))
+                .andExpect(status().isBadRequest());
+        verify(repository, never()).searchByName(any(), anyBoolean(), anyInt(), anyInt());
+    }
+}
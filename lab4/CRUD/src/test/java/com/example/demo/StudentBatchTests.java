@@ -0,0 +1,121 @@
+package com.example.demo;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StudentBatchTests {
+    private static final ObjectId ADA = new ObjectId("65f0c0ffee0000000000abcd");
+    private static final ObjectId ALAN = new ObjectId("65f0c0ffee0000000000abce");
+    private static final ObjectId GONE = new ObjectId("65f0c0ffee0000000000abcf");
+
+    @Test
+    void answersInvalidMissingAndStaleItemsBeforeWriting() {
+        StudentBatch batch = new StudentBatch(List.of(
+                new StudentBatchItem(null, null, null, "No", "Op"),
+                new StudentBatchItem(StudentBatchItem.Op.UPDATE, "not-an-id", null, "Ada", "Byron"),
+                new StudentBatchItem(StudentBatchItem.Op.DELETE, GONE.toHexString(), null, null, null),
+                new StudentBatchItem(StudentBatchItem.Op.UPDATE, ADA.toHexString(), 2L, "Ada", "Byron")), 10);
+
+        assertThat(batch.idsToCheck()).containsExactly(GONE, ADA);
+        batch.plan(Map.of(ADA, 3L));
+
+        assertThat(batch.hasWrites()).isFalse();
+        assertThat(batch.results()).extracting(StudentBatchResult::index).containsExactly(10, 11, 12, 13);
+        assertThat(batch.results()).extracting(StudentBatchResult::status).containsExactly(400, 400, 404, 409);
+    }
+
+    @Test
+    void settlesFromMatchedCountWhenEveryUpdateApplied() {
+        StudentBatch batch = new StudentBatch(List.of(
+                new StudentBatchItem(StudentBatchItem.Op.CREATE, null, null, "Grace", "Hopper"),
+                new StudentBatchItem(StudentBatchItem.Op.UPDATE, ADA.toHexString(), 3L, "Ada", "Byron"),
+                new StudentBatchItem(StudentBatchItem.Op.UPDATE, ALAN.toHexString(), null, "Alan", "Turing"),
+                new StudentBatchItem(StudentBatchItem.Op.DELETE, GONE.toHexString(), null, null, null)), 0);
+        batch.plan(Map.of(ADA, 3L, ALAN, 7L, GONE, 0L));
+
+        assertThat(batch.insertions()).hasSize(1);
+        assertThat(batch.updateOperations()).hasSize(2);
+        assertThat(batch.removalQueries()).hasSize(1);
+        assertThat(batch.settle(result(2), List.of())).isEmpty();
+
+        List<StudentBatchResult> results = batch.results();
+        assertThat(results).extracting(StudentBatchResult::status).containsExactly(201, 200, 200, 200);
+        assertThat(results.get(0).id()).isEqualTo(batch.insertions().get(0).getId().toHexString());
+        assertThat(results).extracting(StudentBatchResult::version).containsExactly(0L, 4L, 8L, null);
+    }
+
+    @Test
+    void rereadsUpdatesWhenSomeDidNotMatch() {
+        StudentBatch batch = new StudentBatch(List.of(
+                new StudentBatchItem(StudentBatchItem.Op.UPDATE, ADA.toHexString(), 3L, "Ada", "Byron"),
+                new StudentBatchItem(StudentBatchItem.Op.UPDATE, ALAN.toHexString(), 7L, "Alan", "Turing")), 0);
+        batch.plan(Map.of(ADA, 3L, ALAN, 7L));
+
+        // Someone else updated Alan between the read and the bulk write
+        assertThat(batch.settle(result(1), List.of())).containsExactly(ADA, ALAN);
+        batch.confirm(Map.of(ADA, 4L, ALAN, 8L + 1));
+
+        assertThat(batch.results()).extracting(StudentBatchResult::status).containsExactly(200, 409);
+    }
+
+    @Test
+    void refusesASecondWriteToTheSameStudent() {
+        StudentBatch batch = new StudentBatch(List.of(
+                new StudentBatchItem(StudentBatchItem.Op.UPDATE, ADA.toHexString(), null, "Ada", "Byron"),
+                new StudentBatchItem(StudentBatchItem.Op.DELETE, ADA.toHexString().toUpperCase(), null, null, null)), 0);
+        batch.plan(Map.of(ADA, 3L));
+
+        assertThat(batch.updateOperations()).hasSize(1);
+        assertThat(batch.removalQueries()).isEmpty();
+        batch.settle(result(1), List.of());
+        assertThat(batch.results()).extracting(StudentBatchResult::status).containsExactly(200, 400);
+    }
+
+    @Test
+    void updateWithoutVersionIsLastWriteWins() {
+        StudentBatch batch = new StudentBatch(List.of(
+                new StudentBatchItem(StudentBatchItem.Op.UPDATE, ADA.toHexString(), null, "Ada", "Byron"),
+                new StudentBatchItem(StudentBatchItem.Op.UPDATE, ALAN.toHexString(), null, "Alan", "Turing")), 0);
+        batch.plan(Map.of(ADA, 3L, ALAN, 7L));
+
+        assertThat(batch.updateOperations().get(0).getFirst().getQueryObject()).doesNotContainKey("version");
+        // Ada was updated by someone else in between, Alan deleted
+        assertThat(batch.settle(result(1), List.of())).containsExactly(ADA, ALAN);
+        batch.confirm(Map.of(ADA, 5L));
+
+        assertThat(batch.results()).extracting(StudentBatchResult::status).containsExactly(200, 404);
+        assertThat(batch.results().get(0).version()).isEqualTo(5L);
+    }
+
+    @Test
+    void mapsWriteErrorsBackToTheirItems() {
+        StudentBatch batch = new StudentBatch(List.of(
+                new StudentBatchItem(StudentBatchItem.Op.DELETE, ADA.toHexString(), null, null, null),
+                new StudentBatchItem(StudentBatchItem.Op.CREATE, null, null, "Grace", "Hopper"),
+                new StudentBatchItem(StudentBatchItem.Op.CREATE, null, null, "Edsger", "Dijkstra")), 0);
+        Map<ObjectId, Long> versions = new HashMap<>();
+        // Stored before versioning
+        versions.put(ADA, null);
+        batch.plan(versions);
+
+        // Inserts come first in the bulk write, so error index 1 is the second create
+        BulkWriteError error = new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1);
+        batch.settle(result(0), List.of(error));
+
+        assertThat(batch.results()).extracting(StudentBatchResult::status).containsExactly(200, 201, 500);
+        assertThat(batch.results().get(2).error()).isEqualTo("duplicate key");
+    }
+
+    private static BulkWriteResult result(int matched) {
+        return BulkWriteResult.acknowledged(0, matched, 0, matched, List.of(), List.of());
+    }
+}
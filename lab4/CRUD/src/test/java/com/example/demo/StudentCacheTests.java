@@ -0,0 +1,171 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.cache.CacheMetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.AopTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The cache declared on the repositories, run against mocks behind the caching proxies
+ * with the provider configured as in {@code application.properties}.
+ */
+@SpringBootTest(classes = StudentCacheTests.Config.class, properties = {
+        "spring.cache.type=caffeine",
+        "spring.cache.cache-names=" + StudentCacheConfig.STUDENTS,
+        "spring.cache.caffeine.spec=maximumSize=100,expireAfterWrite=5m,recordStats"})
+class StudentCacheTests {
+    private static final ObjectId ID = new ObjectId("65f0c0ffee0000000000abcd");
+
+    @Autowired
+    private StudentRepository repository;
+
+    @Autowired
+    private ReactiveStudentRepository reactiveRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private StudentRepository mongo;
+    private ReactiveStudentRepository reactiveMongo;
+
+    @BeforeEach
+    void setUp() {
+        mongo = AopTestUtils.getUltimateTargetObject(repository);
+        reactiveMongo = AopTestUtils.getUltimateTargetObject(reactiveRepository);
+        // One at a time: a varargs call with both repository types is an unchecked generic array
+        reset(mongo);
+        reset(reactiveMongo);
+        cacheManager.getCache(StudentCacheConfig.STUDENTS).clear();
+    }
+
+    @Test
+    void findByIdIsReadOnceAndCountedAsMissThenHit() {
+        when(mongo.findById(ID)).thenReturn(Optional.of(new Student(ID, "Ada", "Lovelace", 3L)));
+        double hits = gets("hit");
+        double misses = gets("miss");
+
+        assertThat(repository.findById(ID)).map(Student::getVersion).contains(3L);
+        assertThat(repository.findById(ID)).map(Student::getVersion).contains(3L);
+
+        verify(mongo, times(1)).findById(ID);
+        assertThat(gets("miss") - misses).isEqualTo(1);
+        assertThat(gets("hit") - hits).isEqualTo(1);
+    }
+
+    @Test
+    void missingStudentIsNotCached() {
+        when(mongo.findById(ID)).thenReturn(Optional.empty());
+
+        assertThat(repository.findById(ID)).isEmpty();
+        assertThat(repository.findById(ID)).isEmpty();
+
+        verify(mongo, times(2)).findById(ID);
+    }
+
+    @Test
+    void updateEvictsWhateverItsOutcome() {
+        when(mongo.findById(ID)).thenReturn(Optional.of(new Student(ID, "Ada", "Lovelace", 3L)));
+        when(mongo.updateStudent(any(), any(), any()))
+                .thenReturn(StudentRepositoryCustom.UpdateResult.failed(StudentRepositoryCustom.Outcome.CONFLICT));
+        repository.findById(ID);
+
+        repository.updateStudent(ID, new Student(null, "Ada", "King", null), 2L);
+        repository.findById(ID);
+
+        // After a 409 the client re-reads, and must see the version that beat it
+        verify(mongo, times(2)).findById(ID);
+    }
+
+    @Test
+    void saveReplacesTheEntryAndDeleteEvictsIt() {
+        Student saved = new Student(ID, "Ada", "King", 4L);
+        when(mongo.save(any(Student.class))).thenReturn(saved);
+        when(mongo.findById(ID)).thenReturn(Optional.empty());
+
+        repository.save(new Student(ID, "Ada", "King", 3L));
+        assertThat(repository.findById(ID)).contains(saved);
+        verify(mongo, times(0)).findById(ID);
+
+        repository.removeById(ID);
+        assertThat(repository.findById(ID)).isEmpty();
+        verify(mongo, times(1)).findById(ID);
+    }
+
+    @Test
+    void batchEvictsEveryStudent() {
+        when(mongo.findById(ID)).thenReturn(Optional.of(new Student(ID, "Ada", "Lovelace", 3L)));
+        when(mongo.executeBatch(any(), anyInt())).thenReturn(List.of());
+        repository.findById(ID);
+
+        repository.executeBatch(List.of(), 0);
+        repository.findById(ID);
+
+        verify(mongo, times(2)).findById(ID);
+    }
+
+    @Test
+    void reactiveFindByIdCachesTheEmittedStudent() {
+        when(reactiveMongo.findById(ID)).thenReturn(Mono.fromSupplier(() -> new Student(ID, "Ada", "Lovelace", 3L)));
+
+        assertThat(reactiveRepository.findById(ID).block()).extracting(Student::getVersion).isEqualTo(3L);
+        assertThat(reactiveRepository.findById(ID).block()).extracting(Student::getVersion).isEqualTo(3L);
+        verify(reactiveMongo, times(1)).findById(ID);
+
+        when(reactiveMongo.removeById(ID)).thenReturn(Mono.just(1L));
+        reactiveRepository.removeById(ID).block();
+        reactiveRepository.findById(ID).block();
+        verify(reactiveMongo, times(2)).findById(ID);
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", StudentCacheConfig.STUDENTS)
+                .tag("result", result).functionCounter().count();
+    }
+
+    @Configuration
+    @Import(StudentCacheConfig.class)
+    @ImportAutoConfiguration({CacheAutoConfiguration.class, MetricsAutoConfiguration.class,
+            CompositeMeterRegistryAutoConfiguration.class, SimpleMetricsExportAutoConfiguration.class,
+            CacheMetricsAutoConfiguration.class})
+    static class Config {
+
+        @Bean
+        StudentRepository studentRepository() {
+            return mock(StudentRepository.class);
+        }
+
+        @Bean
+        ReactiveStudentRepository reactiveStudentRepository() {
+            return mock(ReactiveStudentRepository.class);
+        }
+    }
+}
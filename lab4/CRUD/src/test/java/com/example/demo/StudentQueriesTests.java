@@ -0,0 +1,55 @@
+package com.example.demo;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StudentQueriesTests {
+
+    @Test
+    void prefixSearchIsARangeUnderTheIndexCollation() {
+        Query query = StudentQueries.prefixSearch("  lov ", 2, 10);
+
+        Document lastName = query.getQueryObject().get("lastName", Document.class);
+        assertThat(lastName.get("$gte")).isEqualTo("lov");
+        assertThat(lastName.get("$lt")).isEqualTo("lov\uFFFF");
+        assertThat(query.getSortObject()).isEqualTo(new Document("lastName", 1).append("firstName", 1).append("id", 1));
+        assertThat(query.getSkip()).isEqualTo(20);
+        assertThat(query.getLimit()).isEqualTo(11);
+        // The index is only usable by queries with the same collation
+        assertThat(query.getCollation()).contains(StudentQueries.NAME_COLLATION);
+        assertThat(StudentQueries.nameIndex().getIndexOptions().get("collation"))
+                .isEqualTo(StudentQueries.NAME_COLLATION.toDocument());
+    }
+
+    @Test
+    void secondTermNarrowsByFirstNamePrefix() {
+        Document criteria = StudentQueries.prefixSearch("Lovelace  a", 0, 10).getQueryObject();
+
+        assertThat(criteria.get("lastName")).isEqualTo("Lovelace");
+        assertThat(criteria.get("firstName", Document.class).get("$gte")).isEqualTo("a");
+    }
+
+    @Test
+    void nameIndexCoversTheSearchSort() {
+        assertThat(StudentQueries.nameIndex().getIndexKeys())
+                .isEqualTo(new Document("lastName", 1).append("firstName", 1).append("_id", 1));
+    }
+
+    @Test
+    void everyNameSortHasAnIndexOnItsKeysWithoutCollation() {
+        Query page = StudentQueries.page(Sort.Order.desc("lastName"), null, 20);
+
+        assertThat(page.getSortObject()).isEqualTo(new Document("lastName", -1).append("id", -1));
+        assertThat(page.getCollation()).isEmpty();
+        assertThat(StudentQueries.sortIndexes()).extracting(Index::getIndexKeys).containsExactly(
+                new Document("lastName", 1).append("_id", 1),
+                new Document("firstName", 1).append("_id", 1));
+        assertThat(StudentQueries.sortIndexes()).allSatisfy(index ->
+                assertThat(index.getIndexOptions()).doesNotContainKey("collation"));
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.demo.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load generator for comparing the servlet MVC and the WebFlux stacks of the
+ * demo app. Each of {@code concurrency} clients alternates {@code GET /api/students/{id}}
+ * and {@code GET /api/students?size=20} back to back for {@code seconds}, after a warm-up.
+ * Start the app once as is and once with the {@code reactive} profile, run this against
+ * each, and compare RPS, latency and the server's footprint:
+ * <pre>
+ *   mvn spring-boot:run [-Dspring-boot.run.profiles=reactive]
+ *   StudentLoadBench http://localhost:8080 [concurrency=1000] [seconds=30] [server-pid]
+ * </pre>
+ * With the server's pid (Linux only) its peak resident memory and thread count are sampled
+ * from {@code /proc} during the run. Seeds 100 students if the collection has fewer.
+ */
+public class StudentLoadBench {
+    private static final int SEED_STUDENTS = 100;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: StudentLoadBench <base-url> [concurrency] [seconds] [server-pid]");
+            System.exit(1);
+        }
+        URI base = URI.create(args[0].replaceAll("/$", "") + "/api/students");
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        Path status = args.length > 3 ? Path.of("/proc", args[3], "status") : null;
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        List<HttpRequest> requests = requests(client, base);
+
+        System.out.printf("Warming up for %ds...%n", Math.max(5, seconds / 5));
+        run(client, requests, concurrency, Math.max(5, seconds / 5), null);
+
+        Result result = run(client, requests, concurrency, seconds, status);
+        System.out.printf("concurrency=%d duration=%ds%n", concurrency, seconds);
+        System.out.printf("requests=%d errors=%d rps=%.1f%n",
+                result.latency().count(), result.errors(), result.latency().count() / (double) seconds);
+        System.out.printf("latency p50=%.2fms p99=%.2fms p99.9=%.2fms%n",
+                result.latency().percentileMillis(50), result.latency().percentileMillis(99),
+                result.latency().percentileMillis(99.9));
+        if (status != null) {
+            System.out.printf("server peak rss=%.1fMB peak threads=%d%n",
+                    result.peakRssKb() / 1024.0, result.peakThreads());
+        }
+    }
+
+    /**
+     * Single-student reads for the first page of ids, plus the page itself.
+     */
+    private static List<HttpRequest> requests(HttpClient client, URI base) throws IOException, InterruptedException {
+        HttpRequest firstPage = HttpRequest.newBuilder(URI.create(base + "?size=" + SEED_STUDENTS)).GET().build();
+        JsonNode students = MAPPER.readTree(client.send(firstPage, HttpResponse.BodyHandlers.ofString()).body());
+        for (int i = students.size(); i < SEED_STUDENTS; i++) {
+            String body = "{\"firstName\":\"Bench\",\"lastName\":\"Student " + i + "\"}";
+            client.send(HttpRequest.newBuilder(base)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+        }
+        if (students.size() < SEED_STUDENTS) {
+            students = MAPPER.readTree(client.send(firstPage, HttpResponse.BodyHandlers.ofString()).body());
+        }
+
+        List<HttpRequest> requests = new ArrayList<>();
+        for (JsonNode student : students) {
+            String id = student.path("id").asText();
+            requests.add(HttpRequest.newBuilder(URI.create(base + "/" + id)).timeout(Duration.ofSeconds(30)).GET().build());
+            requests.add(HttpRequest.newBuilder(URI.create(base + "?size=20")).timeout(Duration.ofSeconds(30)).GET().build());
+        }
+        return requests;
+    }
+
+    private static Result run(HttpClient client, List<HttpRequest> requests, int concurrency, int seconds,
+                              Path status) throws InterruptedException {
+        Histogram latency = new Histogram();
+        LongAdder errors = new LongAdder();
+        long[] peak = new long[2];
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+
+        Thread sampler = null;
+        if (status != null) {
+            sampler = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    sample(status, peak);
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            sampler.setDaemon(true);
+            sampler.start();
+        }
+        // The app targets Java 17, so one platform thread per client rather than virtual threads
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        try {
+            for (int i = 0; i < concurrency; i++) {
+                clients.execute(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = requests.get(random.nextInt(requests.size()));
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            latency.record(System.nanoTime() - start);
+                            if (response.statusCode() >= 400) {
+                                errors.increment();
+                            }
+                        } catch (Exception e) {
+                            errors.increment();
+                        }
+                    }
+                });
+            }
+        } finally {
+            clients.shutdown();
+            clients.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        }
+        if (sampler != null) {
+            sampler.join();
+        }
+        return new Result(latency, errors.sum(), peak[0], peak[1]);
+    }
+
+    private static void sample(Path status, long[] peak) {
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    peak[0] = Math.max(peak[0], Long.parseLong(line.replaceAll("\\D", "")));
+                } else if (line.startsWith("Threads:")) {
+                    peak[1] = Math.max(peak[1], Long.parseLong(line.replaceAll("\\D", "")));
+                }
+            }
+        } catch (IOException e) {
+            // The server went away; keep what was seen
+        }
+    }
+
+    /**
+     * Log-linear latency buckets: eight per power of two of microseconds, so percentiles
+     * are accurate to about 10%.
+     */
+    private static final class Histogram {
+        private static final int SUB_BUCKETS = 8;
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+
+        void record(long nanos) {
+            long micros = Math.max(1, nanos / 1000);
+            int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = magnitude < 3 ? 0 : (int) ((micros >> (magnitude - 3)) & (SUB_BUCKETS - 1));
+            buckets.incrementAndGet(magnitude * SUB_BUCKETS + sub);
+            count.increment();
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double percentileMillis(double percentile) {
+            long target = (long) Math.ceil(count() * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= target && seen > 0) {
+                    int magnitude = i / SUB_BUCKETS;
+                    int sub = i % SUB_BUCKETS;
+                    long upper = magnitude < 3 ? 2L << magnitude : (long) (SUB_BUCKETS + sub + 1) << (magnitude - 3);
+                    return upper / 1000.0;
+                }
+            }
+            return 0;
+        }
+    }
+
+    private record Result(Histogram latency, long errors, long peakRssKb, long peakThreads) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo.bench;
+
+import com.example.demo.Student;
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Compares ways of answering a typeahead lookup by last name over a seeded collection:
+ * the collation-aware range on the (lastName, firstName) index that
+ * {@code /api/students/search} uses, a case-insensitive {@code ^prefix} regex, which
+ * cannot use that index, and the full-text index. Prints latency percentiles and the
+ * documents examined per query from {@code explain}:
+ * <pre>
+ *   StudentSearchBench [mongodb-uri=mongodb://localhost/web-lab4-bench] [students=200000] [queries=2000]
+ * </pre>
+ * Seeds a separate database by default; the queries and indexes are built the same way as
+ * in the app (see {@code StudentQueries}), which is package-private, hence the copies here.
+ */
+public class StudentSearchBench {
+    private static final Collation NAME_COLLATION = Collation.of(Locale.ENGLISH).strength(Collation.ComparisonLevel.secondary());
+    private static final String[] SYLLABLES = {
+            "an", "ber", "cal", "dor", "el", "fen", "gar", "hol", "is", "jan", "kor", "lov", "mar", "nel",
+            "or", "pet", "quin", "ros", "sel", "tur", "ul", "van", "wil", "xan", "yor", "zel"};
+
+    public static void main(String[] args) {
+        String uri = args.length > 0 ? args[0] : "mongodb://localhost/web-lab4-bench";
+        int students = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+
+        try (MongoClient client = MongoClients.create(uri)) {
+            String database = uri.substring(uri.lastIndexOf('/') + 1);
+            MongoTemplate mongoTemplate = new MongoTemplate(client, database.isEmpty() ? "web-lab4-bench" : database);
+            seed(mongoTemplate, students);
+
+            Random random = new Random(42);
+            List<String> prefixes = new ArrayList<>(queries);
+            for (int i = 0; i < queries; i++) {
+                // One to five letters of a generated name, in either case, as a user would type them
+                String prefix = name(random).substring(0, 1 + random.nextInt(5));
+                prefixes.add(random.nextBoolean() ? prefix.toUpperCase(Locale.ROOT) : prefix);
+            }
+
+            run(mongoTemplate, "indexed range", prefixes, prefix -> new Query(Criteria.where("lastName")
+                    .gte(prefix).lt(prefix + "\uFFFF"))
+                    .with(Sort.by("lastName", "firstName", "id")).collation(NAME_COLLATION).limit(10));
+            run(mongoTemplate, "regex /^p/i", prefixes, prefix -> new Query(Criteria.where("lastName")
+                    .regex("^" + Pattern.quote(prefix), "i"))
+                    .with(Sort.by("lastName", "firstName", "id")).limit(10));
+            run(mongoTemplate, "full text", prefixes.stream().map(p -> name(random)).toList(), word ->
+                    TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(word)).sortByScore().limit(10));
+        }
+    }
+
+    private static void seed(MongoTemplate mongoTemplate, int students) {
+        long existing = mongoTemplate.count(new Query(), Student.class);
+        if (existing < students) {
+            Random random = new Random(7);
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Student.class);
+            for (long i = existing; i < students; i++) {
+                bulk.insert(new Student(new ObjectId(), capitalize(name(random)), capitalize(name(random)), 0L));
+                if ((i + 1) % 10_000 == 0 || i + 1 == students) {
+                    bulk.execute();
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Student.class);
+                }
+            }
+            System.out.printf("Seeded %d students%n", students - existing);
+        }
+        mongoTemplate.indexOps(Student.class).createIndex(new Index()
+                .on("lastName", Sort.Direction.ASC).on("firstName", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)
+                .named("lastName_firstName").collation(NAME_COLLATION));
+        mongoTemplate.indexOps(Student.class).createIndex(new TextIndexDefinition.TextIndexDefinitionBuilder()
+                .onField("lastName", 2F).onField("firstName").named("names_text").build());
+    }
+
+    private static void run(MongoTemplate mongoTemplate, String name, List<String> terms, Function<String, Query> query) {
+        for (int i = 0; i < Math.min(200, terms.size()); i++) {
+            mongoTemplate.find(query.apply(terms.get(i)), Student.class);
+        }
+        long[] nanos = new long[terms.size()];
+        for (int i = 0; i < terms.size(); i++) {
+            long start = System.nanoTime();
+            mongoTemplate.find(query.apply(terms.get(i)), Student.class);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+
+        Document stats = explain(mongoTemplate, query.apply(terms.get(0)));
+        System.out.printf("%-14s p50=%.2fms p99=%.2fms max=%.2fms docsExamined=%s keysExamined=%s%n", name,
+                nanos[nanos.length / 2] / 1e6, nanos[(int) (nanos.length * 0.99)] / 1e6, nanos[nanos.length - 1] / 1e6,
+                stats.get("totalDocsExamined"), stats.get("totalKeysExamined"));
+    }
+
+    private static Document explain(MongoTemplate mongoTemplate, Query query) {
+        // The queries above are unmapped, so the sort still says "id" where the driver needs "_id"
+        Document sort = new Document();
+        query.getSortObject().forEach((key, value) -> sort.append("id".equals(key) ? "_id" : key, value));
+        var find = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Student.class))
+                .find(query.getQueryObject())
+                .projection(query.getFieldsObject())
+                .sort(sort)
+                .limit(query.getLimit());
+        query.getCollation().ifPresent(collation -> find.collation(collation.toMongoCollation()));
+        return find.explain(ExplainVerbosity.EXECUTION_STATS).get("executionStats", Document.class);
+    }
+
+    private static String name(Random random) {
+        StringBuilder name = new StringBuilder();
+        int syllables = 2 + random.nextInt(2);
+        for (int i = 0; i < syllables; i++) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return name.toString();
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}